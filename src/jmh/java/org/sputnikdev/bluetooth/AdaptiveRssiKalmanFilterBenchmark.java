@@ -0,0 +1,90 @@
+package org.sputnikdev.bluetooth;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a synthetic RSSI trace (a device that moves every few hundred readings, gaussian measurement noise)
+ * through the {@link AdaptiveRssiKalmanFilter} and the {@link RssiKalmanFilter} with fixed factors.
+ * Throughput is measured by JMH, accuracy is reported as two secondary results: "squaredError" (the sum of
+ * squared errors of the estimates against the true signal) and "readings" (the number of estimates).
+ * The root mean square error is {@code sqrt(squaredError / readings)}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AdaptiveRssiKalmanFilterBenchmark {
+
+    private static final int READINGS = 1 << 16;
+
+    @Param({"fixed", "adaptive"})
+    private String type;
+
+    @Param({"1", "3", "6"})
+    private double noise;
+
+    private final short[] readings = new short[READINGS];
+    private final double[] truth = new double[READINGS];
+    private DoubleFilter filter;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        double signal = -60;
+        for (int i = 0; i < READINGS; i++) {
+            if (i % 500 == 0) {
+                signal = -50 - random.nextInt(40);
+            }
+            signal += random.nextGaussian() * 0.05;
+            truth[i] = signal;
+            readings[i] = (short) Math.round(signal + random.nextGaussian() * noise);
+        }
+        filter = "adaptive".equals(type) ? new AdaptiveRssiKalmanFilter() : new RssiKalmanFilter();
+    }
+
+    @Benchmark
+    public double replay(Accuracy accuracy) {
+        int i = index++ & (READINGS - 1);
+        double estimate = filter.next(readings[i]);
+        double error = estimate - truth[i];
+        accuracy.squaredError += error * error;
+        accuracy.readings++;
+        return estimate;
+    }
+
+    /**
+     * Accumulates the error of the estimates of an iteration, JMH sums both counters over the iterations up.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Accuracy {
+
+        public double squaredError;
+        public long readings;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            squaredError = 0;
+            readings = 0;
+        }
+    }
+
+}
@@ -0,0 +1,98 @@
+package org.sputnikdev.bluetooth;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OUI checks and address type guessing of {@link AddressUtils} on a warmed up JVM (the OUI registry is loaded).
+ * See {@link AddressUtilsColdBenchmark} for the first call cost.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AddressUtilsBenchmark {
+
+    private static final int ADDRESSES = 1024;
+
+    private final String[] addresses = new String[ADDRESSES];
+    private final long[] packed = new long[ADDRESSES];
+    private final byte[] types = new byte[ADDRESSES];
+    private final ByteBuffer reports = ByteBuffer.allocate(ADDRESSES * 6);
+    private int index;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        for (int i = 0; i < ADDRESSES; i++) {
+            // a half of addresses are public (registered OUI), the rest are random
+            packed[i] = i % 2 == 0 ? 0x546009000000L | random.nextInt(0x1000000) : random.nextLong() & 0xFFFFFFFFFFFFL;
+            addresses[i] = AddressUtils.formatAddress(packed[i]);
+            for (int j = 0; j < 6; j++) {
+                reports.put((byte) (packed[i] >>> j * 8));
+            }
+        }
+        ((Buffer) reports).flip();
+        AddressUtils.guessAddressTypes(packed, 1, types);
+        AddressUtils.isOui(packed[0]);
+    }
+
+    @Benchmark
+    public boolean isOui() {
+        return AddressUtils.isOui(addresses[index++ & (ADDRESSES - 1)]);
+    }
+
+    @Benchmark
+    public boolean isOuiPacked() {
+        return AddressUtils.isOui(packed[index++ & (ADDRESSES - 1)]);
+    }
+
+    @Benchmark
+    public AddressType guessAddressType() {
+        return AddressUtils.guessAddressType(addresses[index++ & (ADDRESSES - 1)]);
+    }
+
+    @Benchmark
+    public AddressType guessAddressTypePacked() {
+        return AddressUtils.guessAddressType(packed[index++ & (ADDRESSES - 1)]);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public byte[] guessAddressTypeLoop() {
+        for (int i = 0; i < ADDRESSES; i++) {
+            types[i] = (byte) AddressUtils.guessAddressType(packed[i]).ordinal();
+        }
+        return types;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public byte[] guessAddressTypesBatch() {
+        AddressUtils.guessAddressTypes(packed, ADDRESSES, types);
+        return types;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public byte[] guessAddressTypesHciReports() {
+        AddressUtils.guessAddressTypes(reports, types);
+        return types;
+    }
+
+}
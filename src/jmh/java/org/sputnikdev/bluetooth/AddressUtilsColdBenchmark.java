@@ -0,0 +1,34 @@
+package org.sputnikdev.bluetooth;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The first call of {@link AddressUtils} in a fresh JVM, i.e. including loading of the OUI registry.
+ * Each measurement runs in its own fork, so the registry is never loaded beforehand.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class AddressUtilsColdBenchmark {
+
+    @Benchmark
+    public boolean isOui() {
+        return AddressUtils.isOui("54:60:09:95:86:01");
+    }
+
+    @Benchmark
+    public AddressType guessAddressType() {
+        return AddressUtils.guessAddressType("54:60:09:95:86:01");
+    }
+
+}
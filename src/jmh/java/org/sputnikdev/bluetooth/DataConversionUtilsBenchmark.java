@@ -0,0 +1,58 @@
+package org.sputnikdev.bluetooth;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatting of GATT payloads by {@link DataConversionUtils}, payload sizes: a typical notification,
+ * the default ATT MTU payload and a long read.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DataConversionUtilsBenchmark {
+
+    @Param({"4", "20", "512"})
+    private int size;
+
+    private final StringBuilder builder = new StringBuilder();
+    private byte[] payload;
+
+    @Setup
+    public void setUp() {
+        payload = new byte[size];
+        new Random(1).nextBytes(payload);
+    }
+
+    @Benchmark
+    public String convertHex() {
+        return DataConversionUtils.convert(payload, 16);
+    }
+
+    @Benchmark
+    public String toHex() {
+        return DataConversionUtils.toHex(payload);
+    }
+
+    @Benchmark
+    public int appendHex() {
+        builder.setLength(0);
+        return DataConversionUtils.appendHex(payload, 0, payload.length, builder).length();
+    }
+
+}
@@ -0,0 +1,77 @@
+package org.sputnikdev.bluetooth;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the {@link ProximityPipeline} and compares the table based {@link PathLossModel}
+ * with computing {@link Math#pow(double, double)} per reading.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProximityPipelineBenchmark {
+
+    private static final int READINGS = 1024;
+    private static final int DEVICES = 64;
+
+    private final double[] rssi = new double[READINGS];
+    private final short[] readings = new short[READINGS];
+    private final ProximityPipeline[] pipelines = new ProximityPipeline[READINGS];
+    private final double[] distances = new double[READINGS];
+    private final int[] zones = new int[READINGS];
+    private final PathLossModel model = PathLossModel.DEFAULT;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        ProximityPipeline[] devices = new ProximityPipeline[DEVICES];
+        for (int i = 0; i < DEVICES; i++) {
+            devices[i] = new ProximityPipeline();
+        }
+        for (int i = 0; i < READINGS; i++) {
+            readings[i] = (short) (-40 - random.nextInt(60));
+            rssi[i] = readings[i] + random.nextDouble();
+            pipelines[i] = devices[random.nextInt(DEVICES)];
+        }
+    }
+
+    @Benchmark
+    public double distanceTable() {
+        return model.getDistance(rssi[index++ & (READINGS - 1)]);
+    }
+
+    @Benchmark
+    public double distancePow() {
+        return Math.pow(10, (model.getTxPower() - rssi[index++ & (READINGS - 1)]) / (10 * model.getExponent()));
+    }
+
+    @Benchmark
+    public int pipeline() {
+        int i = index++ & (READINGS - 1);
+        return pipelines[i].next(readings[i]);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int[] batch() {
+        ProximityPipeline.next(pipelines, readings, READINGS, distances, zones);
+        return zones;
+    }
+
+}
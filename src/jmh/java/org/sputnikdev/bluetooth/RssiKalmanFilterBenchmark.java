@@ -0,0 +1,63 @@
+package org.sputnikdev.bluetooth;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the boxed ({@link Filter}) and primitive ({@link ShortFilter}, {@link DoubleFilter}) paths
+ * of the {@link RssiKalmanFilter}. Note that typical RSSI values fall into the {@link Short#valueOf(short)} cache,
+ * so the boxed path mostly pays for boxing/unboxing and the generic call rather than for allocations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RssiKalmanFilterBenchmark {
+
+    private static final int READINGS = 1024;
+
+    private final short[] readings = new short[READINGS];
+    private RssiKalmanFilter filter;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        for (int i = 0; i < READINGS; i++) {
+            readings[i] = (short) (-40 - random.nextInt(60));
+        }
+        filter = new RssiKalmanFilter();
+    }
+
+    @Benchmark
+    public Short boxed() {
+        Filter<Short> boxed = filter;
+        return boxed.next(readings[index++ & (READINGS - 1)]);
+    }
+
+    @Benchmark
+    public short primitiveShort() {
+        ShortFilter primitive = filter;
+        return primitive.next(readings[index++ & (READINGS - 1)]);
+    }
+
+    @Benchmark
+    public double primitiveDouble() {
+        DoubleFilter primitive = filter;
+        return primitive.next(readings[index++ & (READINGS - 1)]);
+    }
+
+}
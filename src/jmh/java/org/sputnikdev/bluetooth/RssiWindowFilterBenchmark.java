@@ -0,0 +1,81 @@
+package org.sputnikdev.bluetooth;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the running median of the {@link RssiWindowFilter} (two indexed heaps) with a naive implementation
+ * that copies and sorts the window on each reading. The mean filter is measured as a baseline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RssiWindowFilterBenchmark {
+
+    private static final int READINGS = 1024;
+
+    @Param({"16", "128", "1024"})
+    private int size;
+
+    private final short[] readings = new short[READINGS];
+    private RssiWindowFilter median;
+    private RssiWindowFilter mean;
+    private short[] window;
+    private short[] sorted;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        for (int i = 0; i < READINGS; i++) {
+            readings[i] = (short) (-40 - random.nextInt(60));
+        }
+        median = new RssiWindowFilter(size, RssiWindowFilter.Statistic.MEDIAN);
+        mean = new RssiWindowFilter(size, RssiWindowFilter.Statistic.MEAN);
+        window = new short[size];
+        sorted = new short[size];
+        for (int i = 0; i < size; i++) {
+            median.next(readings[i & (READINGS - 1)]);
+            mean.next(readings[i & (READINGS - 1)]);
+            window[i] = readings[i & (READINGS - 1)];
+        }
+    }
+
+    @Benchmark
+    public double runningMedian() {
+        median.next(readings[index++ & (READINGS - 1)]);
+        return median.currentAsDouble();
+    }
+
+    @Benchmark
+    public double naiveMedian() {
+        window[index % size] = readings[index++ & (READINGS - 1)];
+        System.arraycopy(window, 0, sorted, 0, size);
+        Arrays.sort(sorted);
+        int middle = size >> 1;
+        return (size & 1) == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2.0;
+    }
+
+    @Benchmark
+    public double runningMean() {
+        mean.next(readings[index++ & (READINGS - 1)]);
+        return mean.currentAsDouble();
+    }
+
+}
@@ -0,0 +1,131 @@
+package org.sputnikdev.bluetooth;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing, comparison and map heavy workloads where {@link URL} objects are used as keys and as topic strings.
+ * Apart from parsing, URLs are created once and then used many times,
+ * the typical scenario for device trees and subscriptions.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class URLBenchmark {
+
+    private static final int URLS = 1024;
+
+    private final String[] strings = new String[URLS];
+    private final URL[] urls = new URL[URLS];
+    private final URL[] copies = new URL[URLS];
+    private final URL[] devices = new URL[URLS];
+    private final URL[] canonical = new URL[URLS];
+    private final URL[] canonicalCopies = new URL[URLS];
+    private final URL[] full = new URL[URLS];
+    private final URL[] fullCopies = new URL[URLS];
+    private final Map<URL, Integer> map = new HashMap<>();
+    private int index;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        for (int i = 0; i < URLS; i++) {
+            String url = String.format("tinyb:/B8:27:EB:60:0C:43/54:60:09:95:%02X:%02X/0000180f/00002a19/Level",
+                    random.nextInt(256), i & 0xFF);
+            strings[i] = url;
+            urls[i] = new URL(url);
+            copies[i] = new URL(url);
+            devices[i] = urls[i].getDeviceURL();
+            canonical[i] = urls[i].toCanonical();
+            canonicalCopies[i] = copies[i].toCanonical();
+            full[i] = new URL(canonical[i].toString());
+            fullCopies[i] = new URL(canonical[i].toString());
+            map.put(urls[i], i);
+        }
+    }
+
+    @Benchmark
+    public URL parse() {
+        return new URL(strings[index++ & (URLS - 1)]);
+    }
+
+    @Benchmark
+    public boolean equalsCopy() {
+        int i = index++ & (URLS - 1);
+        return urls[i].equals(copies[i]);
+    }
+
+    @Benchmark
+    public boolean equalsCanonicalCopy() {
+        int i = index++ & (URLS - 1);
+        return canonical[i].equals(canonicalCopies[i]);
+    }
+
+    @Benchmark
+    public boolean equalsFullCopy() {
+        int i = index++ & (URLS - 1);
+        return full[i].equals(fullCopies[i]);
+    }
+
+    @Benchmark
+    public int compareTo() {
+        int i = index++ & (URLS - 1);
+        return urls[i].compareTo(urls[i + 1 & (URLS - 1)]);
+    }
+
+    @Benchmark
+    public int compareCanonical() {
+        int i = index++ & (URLS - 1);
+        return canonical[i].compareTo(canonical[i + 1 & (URLS - 1)]);
+    }
+
+    @Benchmark
+    public int compareSortKeys() {
+        int i = index++ & (URLS - 1);
+        return urls[i].getSortKey().compareTo(urls[i + 1 & (URLS - 1)].getSortKey());
+    }
+
+    @Benchmark
+    public boolean isDescendant() {
+        int i = index++ & (URLS - 1);
+        return urls[i].isDescendant(devices[i]);
+    }
+
+    @Benchmark
+    public Integer mapGet() {
+        return map.get(copies[index++ & (URLS - 1)]);
+    }
+
+    @Benchmark
+    public Integer mapPut() {
+        int i = index++ & (URLS - 1);
+        return map.put(copies[i], i);
+    }
+
+    @Benchmark
+    public int hashCodeOnly() {
+        return urls[index++ & (URLS - 1)].hashCode();
+    }
+
+    @Benchmark
+    public String topic() {
+        return urls[index++ & (URLS - 1)].toString();
+    }
+
+}
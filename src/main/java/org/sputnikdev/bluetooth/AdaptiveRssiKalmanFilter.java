@@ -0,0 +1,188 @@
+package org.sputnikdev.bluetooth;
+
+/**
+ * An adaptive variant of the {@link RssiKalmanFilter} that tunes its noise factors online, so that the same filter
+ * works well for both quiet (e.g. outdoor) and noisy (e.g. indoor) environments and for devices that move.
+ *
+ * <p>The noise factors are estimated over a sliding window of the last readings:
+ * <ul>
+ *     <li>measurement noise - half of the mean squared difference between consecutive readings (the difference
+ *     of two consecutive readings has twice the variance of the noise, whereas slow changes of the signal itself
+ *     hardly contribute to it)</li>
+ *     <li>process noise - the excess of the mean squared innovation (the difference between a reading and its
+ *     prediction) over the innovation variance that the filter expects, i.e. how much the signal has changed
+ *     in a way that the current factors cannot explain</li>
+ * </ul>
+ * The provided factors are used until the window is full. Both statistics are running sums over primitive
+ * ring buffers, so that each reading takes constant time and no objects are allocated.
+ *
+ * <p>The adaptive filter follows changes of the signal much faster than a filter with fixed factors,
+ * the trade-off is a slightly noisier estimate of a perfectly stationary signal.
+ */
+public class AdaptiveRssiKalmanFilter implements Filter<Short>, ShortFilter, DoubleFilter {
+
+    private static final int DEFAULT_WINDOW = 20;
+    private static final double RSSI_PROCESS_NOISE = 0.125;
+    private static final double RSSI_MEASUREMENT_NOISE = 30;
+    private static final double MIN_PROCESS_NOISE = 0.01;
+    private static final double MAX_PROCESS_NOISE = 100;
+    private static final double MIN_MEASUREMENT_NOISE = 0.25;
+    private static final double MAX_MEASUREMENT_NOISE = 1000;
+
+    private final double[] differences;
+    private final double[] innovations;
+    private double differencesSum;
+    private double innovationsSum;
+    private int head;
+    private int count;
+
+    private final double initialProcessNoise;
+    private final double initialMeasurementNoise;
+    private double processNoise;
+    private double measurementNoise;
+    private boolean initialized;
+    private double previousReading;
+    private double currentRssi;
+    private double errorCovariance;
+
+    /**
+     * Creates an instance of the filter with some default settings:
+     * <br>Window: 20 readings
+     * <br>Initial process noise: 0.125
+     * <br>Initial measurement noise: 30.
+     */
+    public AdaptiveRssiKalmanFilter() {
+        this(DEFAULT_WINDOW, RSSI_PROCESS_NOISE, RSSI_MEASUREMENT_NOISE);
+    }
+
+    /**
+     * Creates an instance of the filter with some provided settings.
+     * @param window number of readings the noise factors are estimated over
+     * @param processNoise initial process noise factor
+     * @param measurementNoise initial measurement noise factor
+     */
+    public AdaptiveRssiKalmanFilter(int window, double processNoise, double measurementNoise) {
+        if (window < 2) {
+            throw new IllegalArgumentException("Window must contain at least 2 readings: " + window);
+        }
+        this.differences = new double[window];
+        this.innovations = new double[window];
+        this.initialProcessNoise = processNoise;
+        this.initialMeasurementNoise = measurementNoise;
+        this.processNoise = processNoise;
+        this.measurementNoise = measurementNoise;
+    }
+
+    @Override
+    public Short next(Short next) {
+        return next(next.shortValue());
+    }
+
+    @Override
+    public short next(short next) {
+        return (short) next((double) next);
+    }
+
+    @Override
+    public double next(double next) {
+        if (!initialized) {
+            initialized = true;
+            previousReading = next;
+            double kalmanGain = 1 / (1 + measurementNoise);
+            currentRssi = next;
+            errorCovariance = 1 - kalmanGain;
+            return currentRssi;
+        }
+        double difference = next - previousReading;
+        final double innovation = next - currentRssi;
+        previousReading = next;
+        if (count == differences.length) {
+            differencesSum -= differences[head];
+            innovationsSum -= innovations[head];
+        } else {
+            count++;
+        }
+        differences[head] = difference * difference;
+        innovations[head] = innovation * innovation;
+        differencesSum += differences[head];
+        innovationsSum += innovations[head];
+        head = head + 1 < differences.length ? head + 1 : 0;
+        if (count == differences.length) {
+            adapt();
+        }
+        double interimCovariance = errorCovariance + processNoise;
+        double kalmanGain = interimCovariance / (interimCovariance + measurementNoise);
+        currentRssi += kalmanGain * innovation;
+        errorCovariance = (1 - kalmanGain) * interimCovariance;
+        return currentRssi;
+    }
+
+    @Override
+    public Short current() {
+        return currentAsShort();
+    }
+
+    @Override
+    public short currentAsShort() {
+        return (short) currentRssi;
+    }
+
+    @Override
+    public double currentAsDouble() {
+        return currentRssi;
+    }
+
+    /**
+     * Resets the filter to its initial state (as if it has not received any readings),
+     * noise factors are set back to their initial values.
+     */
+    public void reset() {
+        differencesSum = 0;
+        innovationsSum = 0;
+        head = 0;
+        count = 0;
+        processNoise = initialProcessNoise;
+        measurementNoise = initialMeasurementNoise;
+        initialized = false;
+        previousReading = 0;
+        currentRssi = 0;
+        errorCovariance = 0;
+    }
+
+    /**
+     * Returns the current (estimated) process noise factor.
+     * @return process noise factor
+     */
+    public double getProcessNoise() {
+        return processNoise;
+    }
+
+    /**
+     * Returns the current (estimated) measurement noise factor.
+     * @return measurement noise factor
+     */
+    public double getMeasurementNoise() {
+        return measurementNoise;
+    }
+
+    /**
+     * Returns the number of readings the noise factors are estimated over.
+     * @return window size
+     */
+    public int getWindow() {
+        return differences.length;
+    }
+
+    private void adapt() {
+        measurementNoise = clamp(differencesSum / count / 2, MIN_MEASUREMENT_NOISE, MAX_MEASUREMENT_NOISE);
+        // expected innovation variance is errorCovariance + processNoise + measurementNoise
+        processNoise = clamp(innovationsSum / count - measurementNoise - errorCovariance,
+                MIN_PROCESS_NOISE, MAX_PROCESS_NOISE);
+    }
+
+    private static double clamp(double value, double min, double max) {
+        // running sums can drift slightly below zero, min takes care of it
+        return value < min ? min : value > max ? max : value;
+    }
+
+}
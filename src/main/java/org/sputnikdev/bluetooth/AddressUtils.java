@@ -1,9 +1,23 @@
 package org.sputnikdev.bluetooth;
 
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
+import java.net.URISyntaxException;
+import java.net.URLConnection;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.Set;
+import java.util.stream.IntStream;
 
 /**
  * Utility class to work with Bluetooth addresses. Mainly is used to identify Bluetooth device address type.
@@ -11,7 +25,29 @@ import java.util.Set;
  */
 public class AddressUtils {
 
-    private static volatile Set ouiRegistry;
+    private static final int ADDRESS_LENGTH = 17;
+    private static final int OUI_DIGITS = 6;
+    private static final long ADDRESS_MASK = 0xFFFFFFFFFFFFL;
+
+    private static final String OUI_REGISTRY = "/oui_registry.bin";
+    private static final String LEGACY_OUI_REGISTRY = "/oui_registry.ser";
+
+    private static final ByteBuffer EMPTY_REGISTRY = ByteBuffer.allocate(Integer.BYTES);
+    private static final int REGISTRY_BUFFER_SIZE = 256 * 1024;
+
+    private static final int HCI_ADDRESS_LENGTH = 6;
+    private static final int BATCH_CHUNK = 4096;
+    // address types indexed by (OUI is registered) << 2 | two most significant bits of the address
+    private static final byte[] BATCH_TYPES = {
+        (byte) AddressType.RESOLVABLE.ordinal(), (byte) AddressType.NON_RESOLVABLE.ordinal(),
+        (byte) AddressType.PUBLIC.ordinal(), (byte) AddressType.STATIC.ordinal(),
+        (byte) AddressType.PUBLIC.ordinal(), (byte) AddressType.PUBLIC.ordinal(),
+        (byte) AddressType.PUBLIC.ordinal(), (byte) AddressType.PUBLIC.ordinal()
+    };
+
+    private static volatile int[] ouiRegistry;
+    private static volatile long[] ouiBitmap;
+    private static volatile ByteBuffer vendorRegistry;
 
     /**
      * Checks whether the provided address is a Organizational Unique Identifier.
@@ -20,14 +56,41 @@ public class AddressUtils {
      * @return true if the provided address is a OUI, false otherwise
      */
     public static boolean isOui(String address) {
-        if (ouiRegistry == null) {
-            synchronized (AddressUtils.class) {
-                if (ouiRegistry == null) {
-                    ouiRegistry = loadOuiRegistry();
-                }
-            }
-        }
-        return ouiRegistry.contains(Integer.valueOf(address.replace(":", "").substring(0, 6), 16));
+        return isOuiRegistered(parseOui(address));
+    }
+
+    /**
+     * Checks whether the provided address is a Organizational Unique Identifier.
+     * This method uses internal registry of OUI that is built/updated every release cycle (see maven build).
+     * @param address Bluetooth address packed into the 48 least significant bits of a long,
+     *                see {@link #parseAddress(CharSequence)}
+     * @return true if the provided address is a OUI, false otherwise
+     */
+    public static boolean isOui(long address) {
+        return isOuiRegistered((int) (address >>> 24) & 0xFFFFFF);
+    }
+
+    /**
+     * Looks up the vendor (organization) name the OUI of the provided address is assigned to.
+     * Vendor names are read from a memory mapped (or off-heap) registry on demand, so that looking up vendors
+     * does not increase heap consumption regardless of the registry size.
+     * @param address Bluetooth address
+     * @return vendor name or null if the OUI is not registered or vendor names are not available
+     */
+    public static String lookupVendor(String address) {
+        return readVendor(getVendorRegistry(), parseOui(address));
+    }
+
+    /**
+     * Looks up the vendor (organization) name the OUI of the provided address is assigned to.
+     * Vendor names are read from a memory mapped (or off-heap) registry on demand, so that looking up vendors
+     * does not increase heap consumption regardless of the registry size.
+     * @param address Bluetooth address packed into the 48 least significant bits of a long,
+     *                see {@link #parseAddress(CharSequence)}
+     * @return vendor name or null if the OUI is not registered or vendor names are not available
+     */
+    public static String lookupVendor(long address) {
+        return readVendor(getVendorRegistry(), (int) (address >>> 24) & 0xFFFFFF);
     }
 
     /**
@@ -59,7 +122,184 @@ public class AddressUtils {
             return AddressType.PUBLIC;
         }
 
-        Integer msb = Integer.parseUnsignedInt(address.substring(0, 2), 16) >> 6;
+        return guessRandomAddressType(parseHexDigit(address, 0) >> 2);
+    }
+
+    /**
+     * Guesses address type of the provided Bluetooth address. There is not any easy way to identify definitively
+     * address type by using Bluetooth address only, hence the following logic is used to the best make a guess.
+     * Unlike its string counterpart, this method never returns {@link AddressType#COMPOSITE}
+     * as wildcard addresses cannot be represented in the packed form.
+     * @param address Bluetooth address packed into the 48 least significant bits of a long,
+     *                see {@link #parseAddress(CharSequence)}
+     * @return guessed address type
+     */
+    public static AddressType guessAddressType(long address) {
+        if (isOui(address)) {
+            return AddressType.PUBLIC;
+        }
+        return guessRandomAddressType((int) (address >>> 46) & 0b11);
+    }
+
+    /**
+     * Guesses address types of a batch of Bluetooth addresses, the same logic as in
+     * {@link #guessAddressType(long)} is applied to each address. Classification is a branch-free lookup in a bitmap
+     * of registered OUIs (2 MiB, built on the first call) and nothing gets allocated per address.
+     * @param addresses packed Bluetooth addresses, see {@link #parseAddress(CharSequence)}
+     * @param length number of addresses in the batch
+     * @param types ordinals of guessed address types (see {@link AddressType#ordinal()}), one per address
+     */
+    public static void guessAddressTypes(long[] addresses, int length, byte[] types) {
+        classify(addresses, 0, length, types, getOuiBitmap());
+    }
+
+    /**
+     * Guesses address types of a batch of Bluetooth addresses as they come in HCI reports, i.e. 6-byte addresses
+     * in the little-endian byte order (the least significant byte first). Addresses are read from the current
+     * position of the buffer up to its limit, the position is not changed.
+     * See {@link #guessAddressTypes(long[], int, byte[])} for more info.
+     * @param addresses buffer of consecutive 6-byte little-endian addresses
+     * @param types ordinals of guessed address types (see {@link AddressType#ordinal()}), one per address
+     * @return number of addresses in the batch
+     */
+    public static int guessAddressTypes(ByteBuffer addresses, byte[] types) {
+        int length = addresses.remaining() / HCI_ADDRESS_LENGTH;
+        classify(addresses, 0, length, types, getOuiBitmap());
+        return length;
+    }
+
+    /**
+     * A parallel variant of the {@link #guessAddressTypes(long[], int, byte[])} method for very large batches,
+     * the batch is split into chunks which are classified in the common fork/join pool.
+     * @param addresses packed Bluetooth addresses, see {@link #parseAddress(CharSequence)}
+     * @param length number of addresses in the batch
+     * @param types ordinals of guessed address types (see {@link AddressType#ordinal()}), one per address
+     */
+    public static void guessAddressTypesParallel(long[] addresses, int length, byte[] types) {
+        long[] bitmap = getOuiBitmap();
+        IntStream.range(0, (length + BATCH_CHUNK - 1) / BATCH_CHUNK).parallel().forEach(chunk ->
+                classify(addresses, chunk * BATCH_CHUNK, Math.min(length, (chunk + 1) * BATCH_CHUNK),
+                        types, bitmap));
+    }
+
+    /**
+     * A parallel variant of the {@link #guessAddressTypes(ByteBuffer, byte[])} method for very large batches,
+     * the batch is split into chunks which are classified in the common fork/join pool.
+     * @param addresses buffer of consecutive 6-byte little-endian addresses
+     * @param types ordinals of guessed address types (see {@link AddressType#ordinal()}), one per address
+     * @return number of addresses in the batch
+     */
+    public static int guessAddressTypesParallel(ByteBuffer addresses, byte[] types) {
+        long[] bitmap = getOuiBitmap();
+        int length = addresses.remaining() / HCI_ADDRESS_LENGTH;
+        IntStream.range(0, (length + BATCH_CHUNK - 1) / BATCH_CHUNK).parallel().forEach(chunk ->
+                classify(addresses, chunk * BATCH_CHUNK, Math.min(length, (chunk + 1) * BATCH_CHUNK),
+                        types, bitmap));
+        return length;
+    }
+
+    /**
+     * Parses a Bluetooth address in the "XX:XX:XX:XX:XX:XX" format (case insensitive) into a long value.
+     * The address is packed into the 48 least significant bits, the most significant byte of the address
+     * goes first, e.g. "54:60:09:95:86:01" becomes 0x546009958601L. Nothing gets allocated unless the address
+     * is invalid.
+     * @param address Bluetooth address
+     * @return packed Bluetooth address
+     * @throws IllegalArgumentException if the provided address is not a valid Bluetooth address
+     */
+    public static long parseAddress(CharSequence address) {
+        if (address.length() != ADDRESS_LENGTH) {
+            throw new IllegalArgumentException("Invalid Bluetooth address: " + address);
+        }
+        long result = 0;
+        for (int i = 0; i < ADDRESS_LENGTH; i += 3) {
+            if (i > 0 && address.charAt(i - 1) != ':') {
+                throw new IllegalArgumentException("Invalid Bluetooth address: " + address);
+            }
+            result = result << 8 | parseHexDigit(address, i) << 4 | parseHexDigit(address, i + 1);
+        }
+        return result;
+    }
+
+    /**
+     * Formats a packed Bluetooth address into the "XX:XX:XX:XX:XX:XX" format (upper case).
+     * @param address Bluetooth address packed into the 48 least significant bits of a long
+     * @return Bluetooth address in the "XX:XX:XX:XX:XX:XX" format
+     */
+    public static String formatAddress(long address) {
+        char[] chars = new char[ADDRESS_LENGTH];
+        formatAddress(address, chars, 0);
+        return new String(chars);
+    }
+
+    /**
+     * Formats a packed Bluetooth address into the "XX:XX:XX:XX:XX:XX" format (upper case)
+     * and appends it to the provided string builder.
+     * @param address Bluetooth address packed into the 48 least significant bits of a long
+     * @param builder target string builder
+     * @return the provided string builder
+     */
+    public static StringBuilder formatAddress(long address, StringBuilder builder) {
+        for (int shift = 40; shift >= 0; shift -= 8) {
+            if (shift < 40) {
+                builder.append(':');
+            }
+            builder.append(DataConversionUtils.UPPER_HEX_DIGITS[(int) (address >>> (shift + 4)) & 0xF]);
+            builder.append(DataConversionUtils.UPPER_HEX_DIGITS[(int) (address >>> shift) & 0xF]);
+        }
+        return builder;
+    }
+
+    /**
+     * Formats a packed Bluetooth address into the "XX:XX:XX:XX:XX:XX" format (upper case)
+     * and writes it into the provided char array, 17 chars are written.
+     * @param address Bluetooth address packed into the 48 least significant bits of a long
+     * @param target target char array
+     * @param offset offset in the target char array
+     */
+    public static void formatAddress(long address, char[] target, int offset) {
+        int index = offset;
+        for (int shift = 40; shift >= 0; shift -= 8) {
+            if (shift < 40) {
+                target[index++] = ':';
+            }
+            target[index++] = DataConversionUtils.UPPER_HEX_DIGITS[(int) (address >>> (shift + 4)) & 0xF];
+            target[index++] = DataConversionUtils.UPPER_HEX_DIGITS[(int) (address >>> shift) & 0xF];
+        }
+    }
+
+    /**
+     * Checks whether the provided long value is a valid packed Bluetooth address,
+     * i.e. only the 48 least significant bits can be set.
+     * @param address packed Bluetooth address
+     * @return true if the value is a valid packed Bluetooth address, false otherwise
+     */
+    public static boolean isValidAddress(long address) {
+        return (address & ~ADDRESS_MASK) == 0;
+    }
+
+    private static void classify(long[] addresses, int from, int to, byte[] types, long[] bitmap) {
+        for (int i = from; i < to; i++) {
+            long address = addresses[i];
+            int oui = (int) (address >>> 24) & 0xFFFFFF;
+            int registered = (int) (bitmap[oui >>> 6] >>> oui) & 1;
+            types[i] = BATCH_TYPES[registered << 2 | (int) (address >>> 46) & 0b11];
+        }
+    }
+
+    private static void classify(ByteBuffer addresses, int from, int to, byte[] types, long[] bitmap) {
+        int start = addresses.position();
+        for (int i = from; i < to; i++) {
+            // only the three most significant bytes (OUI) matter, they are the last ones in the little-endian order
+            int offset = start + i * HCI_ADDRESS_LENGTH;
+            int msb = addresses.get(offset + 5) & 0xFF;
+            int oui = msb << 16 | (addresses.get(offset + 4) & 0xFF) << 8 | addresses.get(offset + 3) & 0xFF;
+            int registered = (int) (bitmap[oui >>> 6] >>> oui) & 1;
+            types[i] = BATCH_TYPES[registered << 2 | msb >>> 6];
+        }
+    }
+
+    private static AddressType guessRandomAddressType(int msb) {
         switch (msb) {
             case 0b11: return AddressType.STATIC;
             case 0b01: return AddressType.NON_RESOLVABLE;
@@ -68,10 +308,211 @@ public class AddressUtils {
         }
     }
 
-    private static Set loadOuiRegistry() {
-        try (InputStream fileIn = AddressUtils.class.getResourceAsStream("/oui_registry.ser")) {
+    private static int parseOui(String address) {
+        // backward compatibility: colons are optional
+        int oui = 0;
+        int digits = 0;
+        for (int i = 0; i < address.length() && digits < OUI_DIGITS; i++) {
+            if (address.charAt(i) != ':') {
+                oui = oui << 4 | parseHexDigit(address, i);
+                digits++;
+            }
+        }
+        if (digits < OUI_DIGITS) {
+            throw new NumberFormatException("Invalid Bluetooth address: " + address);
+        }
+        return oui;
+    }
+
+    private static int parseHexDigit(CharSequence address, int index) {
+        int digit = Character.digit(address.charAt(index), 16);
+        if (digit < 0) {
+            throw new NumberFormatException("Invalid Bluetooth address: " + address);
+        }
+        return digit;
+    }
+
+    private static boolean isOuiRegistered(int oui) {
+        return Arrays.binarySearch(getOuiRegistry(), oui) >= 0;
+    }
+
+    private static int[] getOuiRegistry() {
+        int[] registry = ouiRegistry;
+        if (registry == null) {
+            synchronized (AddressUtils.class) {
+                registry = ouiRegistry;
+                if (registry == null) {
+                    registry = loadOuiRegistry();
+                    ouiRegistry = registry;
+                }
+            }
+        }
+        return registry;
+    }
+
+    private static long[] getOuiBitmap() {
+        long[] bitmap = ouiBitmap;
+        if (bitmap == null) {
+            synchronized (AddressUtils.class) {
+                bitmap = ouiBitmap;
+                if (bitmap == null) {
+                    bitmap = new long[1 << 24 >>> 6];
+                    for (int oui : getOuiRegistry()) {
+                        bitmap[oui >>> 6] |= 1L << oui;
+                    }
+                    ouiBitmap = bitmap;
+                }
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * Looks up a vendor name in the OUI registry. The registry consists of the following sections
+     * (all integers are big-endian 32-bit integers):
+     * <ul>
+     *     <li>number of OUIs</li>
+     *     <li>sorted OUIs</li>
+     *     <li>optional: offsets of vendor names in the string pool, one per OUI plus the end of the pool</li>
+     *     <li>optional: string pool, UTF-8 encoded vendor names (empty if the name is unknown)</li>
+     * </ul>
+     * @param registry OUI registry
+     * @param oui OUI
+     * @return vendor name or null if the OUI is not registered or the registry does not contain vendor names
+     */
+    static String readVendor(ByteBuffer registry, int oui) {
+        int count = registry.getInt(0);
+        int offsetsStart = Integer.BYTES * (count + 1);
+        int poolStart = offsetsStart + Integer.BYTES * (count + 1);
+        if (registry.limit() < poolStart) {
+            return null;
+        }
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midOui = registry.getInt(Integer.BYTES * (mid + 1));
+            if (midOui < oui) {
+                low = mid + 1;
+            } else if (midOui > oui) {
+                high = mid - 1;
+            } else {
+                int start = registry.getInt(offsetsStart + Integer.BYTES * mid);
+                byte[] name = new byte[registry.getInt(offsetsStart + Integer.BYTES * (mid + 1)) - start];
+                if (name.length == 0) {
+                    return null;
+                }
+                for (int i = 0; i < name.length; i++) {
+                    name[i] = registry.get(poolStart + start + i);
+                }
+                return new String(name, StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private static ByteBuffer getVendorRegistry() {
+        ByteBuffer registry = vendorRegistry;
+        if (registry == null) {
+            synchronized (AddressUtils.class) {
+                registry = vendorRegistry;
+                if (registry == null) {
+                    registry = mapOuiRegistry();
+                    vendorRegistry = registry;
+                }
+            }
+        }
+        return registry;
+    }
+
+    /**
+     * Maps the OUI registry into memory. If the registry is a file, then it gets memory mapped,
+     * otherwise (e.g. if it is packaged in a jar file) it gets copied into an off-heap buffer.
+     * @return OUI registry buffer
+     */
+    private static ByteBuffer mapOuiRegistry() {
+        java.net.URL resource = AddressUtils.class.getResource(OUI_REGISTRY);
+        if (resource == null) {
+            return EMPTY_REGISTRY;
+        }
+        try {
+            if ("file".equals(resource.getProtocol())) {
+                try (FileChannel channel = FileChannel.open(Paths.get(resource.toURI()), StandardOpenOption.READ)) {
+                    return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                }
+            }
+            URLConnection connection = resource.openConnection();
+            return copyOuiRegistry(connection.getInputStream(), connection.getContentLengthLong());
+        } catch (IOException | URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Copies the OUI registry into an off-heap buffer.
+     * @param stream registry stream
+     * @param length length of the registry or a non-positive value if the length is unknown
+     * @return OUI registry buffer
+     * @throws IOException if an I/O error occurs
+     */
+    static ByteBuffer copyOuiRegistry(InputStream stream, long length) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalStateException("OUI registry is too large: " + length);
+        }
+        // the content length is unknown (-1) for some resources, the buffer grows then as needed
+        ByteBuffer registry = ByteBuffer.allocateDirect(length > 0 ? (int) length : REGISTRY_BUFFER_SIZE);
+        try (ReadableByteChannel channel = Channels.newChannel(stream)) {
+            while (true) {
+                if (!registry.hasRemaining()) {
+                    // grow only if there is more data, so that a registry of the known length is not copied
+                    int next = stream.read();
+                    if (next < 0) {
+                        break;
+                    }
+                    ((Buffer) registry).flip();
+                    registry = ByteBuffer.allocateDirect(registry.capacity() << 1).put(registry).put((byte) next);
+                }
+                if (channel.read(registry) < 0) {
+                    break;
+                }
+            }
+        }
+        ((Buffer) registry).flip();
+        return registry;
+    }
+
+    /**
+     * Loads the OUI registry as a sorted array of OUIs. The flat binary registry (see
+     * {@link #readVendor(ByteBuffer, int)}) is preferred, the legacy serialized set is used as a fallback.
+     * @return sorted array of OUIs
+     */
+    static int[] loadOuiRegistry() {
+        try (InputStream fileIn = AddressUtils.class.getResourceAsStream(OUI_REGISTRY)) {
+            if (fileIn != null) {
+                DataInputStream dataIn = new DataInputStream(new BufferedInputStream(fileIn));
+                int[] registry = new int[dataIn.readInt()];
+                for (int i = 0; i < registry.length; i++) {
+                    registry[i] = dataIn.readInt();
+                }
+                return registry;
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return loadLegacyOuiRegistry();
+    }
+
+    static int[] loadLegacyOuiRegistry() {
+        try (InputStream fileIn = AddressUtils.class.getResourceAsStream(LEGACY_OUI_REGISTRY)) {
             ObjectInputStream objectIn = new ObjectInputStream(fileIn);
-            return (Set) objectIn.readObject();
+            Set<?> set = (Set<?>) objectIn.readObject();
+            int[] registry = new int[set.size()];
+            int index = 0;
+            for (Object oui : set) {
+                registry[index++] = (Integer) oui;
+            }
+            Arrays.sort(registry);
+            return registry;
         } catch (ClassNotFoundException | IOException e) {
             throw new IllegalStateException(e);
         }
@@ -0,0 +1,252 @@
+package org.sputnikdev.bluetooth;
+
+import java.util.UUID;
+
+/**
+ * A 128-bit UUID of a GATT service or characteristic that is stored as two long values.
+ *
+ * <p>Unlike UUID strings, short (16-bit and 32-bit) and full forms of the same Bluetooth SIG UUID are equal,
+ * e.g. "180f", "0000180f" and "0000180f-0000-1000-8000-00805f9b34fb" all represent the same UUID,
+ * as short UUIDs are defined on top of the Bluetooth base UUID 00000000-0000-1000-8000-00805f9b34fb.
+ * Equality, hashing and comparison take a couple of long operations. Parsing and formatting do not use regular
+ * expressions and do not allocate anything but the result.
+ */
+public final class BluetoothUUID implements Comparable<BluetoothUUID> {
+
+    private static final long BASE_UUID_MSB = 0x1000L;
+    private static final long BASE_UUID_LSB = 0x800000805F9B34FBL;
+    private static final int FULL_LENGTH = 36;
+    private static final int SUFFIX_LENGTH = 28;
+    private static final int MIN_SHORT_DIGITS = 4;
+    private static final int MAX_SHORT_DIGITS = 8;
+
+    private final long mostSignificantBits;
+    private final long leastSignificantBits;
+
+    /**
+     * Creates a UUID from its 128 bits.
+     * @param mostSignificantBits the most significant 64 bits
+     * @param leastSignificantBits the least significant 64 bits
+     */
+    public BluetoothUUID(long mostSignificantBits, long leastSignificantBits) {
+        this.mostSignificantBits = mostSignificantBits;
+        this.leastSignificantBits = leastSignificantBits;
+    }
+
+    /**
+     * Creates a UUID from its short (16-bit or 32-bit) form.
+     * @param shortUUID 16-bit or 32-bit UUID
+     * @return a UUID based on the Bluetooth base UUID
+     */
+    public static BluetoothUUID valueOf(int shortUUID) {
+        return new BluetoothUUID((shortUUID & 0xFFFFFFFFL) << 32 | BASE_UUID_MSB, BASE_UUID_LSB);
+    }
+
+    /**
+     * Creates a UUID from a {@link UUID} object.
+     * @param uuid UUID
+     * @return a UUID with the same 128 bits
+     */
+    public static BluetoothUUID valueOf(UUID uuid) {
+        return new BluetoothUUID(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    /**
+     * Parses a UUID in its short form (4 to 8 hex digits, e.g. "180f") or full form
+     * (e.g. "0000180f-0000-1000-8000-00805f9b34fb"), case insensitive. The same forms as in {@link URL}
+     * are accepted.
+     * @param uuid text representation of a UUID
+     * @return parsed UUID
+     * @throws IllegalArgumentException if the provided text is not a valid UUID
+     */
+    public static BluetoothUUID parse(CharSequence uuid) {
+        return parse(uuid, 0, uuid.length());
+    }
+
+    /**
+     * Parses a UUID in its short form (4 to 8 hex digits, e.g. "180f") or full form
+     * (e.g. "0000180f-0000-1000-8000-00805f9b34fb"), case insensitive. The same forms as in {@link URL}
+     * are accepted.
+     * @param text a text containing a UUID
+     * @param from index of the first char of the UUID
+     * @param to index next to the last char of the UUID
+     * @return parsed UUID
+     * @throws IllegalArgumentException if the provided text is not a valid UUID
+     */
+    public static BluetoothUUID parse(CharSequence text, int from, int to) {
+        BluetoothUUID result = tryParse(text, from, to);
+        if (result == null) {
+            throw new IllegalArgumentException("Invalid UUID: " + text.subSequence(from, to));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the most significant 64 bits of the UUID.
+     * @return the most significant 64 bits
+     */
+    public long getMostSignificantBits() {
+        return mostSignificantBits;
+    }
+
+    /**
+     * Returns the least significant 64 bits of the UUID.
+     * @return the least significant 64 bits
+     */
+    public long getLeastSignificantBits() {
+        return leastSignificantBits;
+    }
+
+    /**
+     * Checks whether the UUID has a short (16-bit or 32-bit) form, i.e. it is based on the Bluetooth base UUID.
+     * @return true if the UUID has a short form, false otherwise
+     */
+    public boolean isShort() {
+        return leastSignificantBits == BASE_UUID_LSB && (mostSignificantBits & 0xFFFFFFFFL) == BASE_UUID_MSB;
+    }
+
+    /**
+     * Checks whether the UUID has a 16-bit short form.
+     * @return true if the UUID has a 16-bit short form, false otherwise
+     */
+    public boolean is16Bit() {
+        return isShort() && mostSignificantBits >>> 48 == 0;
+    }
+
+    /**
+     * Returns the short (16-bit or 32-bit) form of the UUID.
+     * @return short form of the UUID
+     * @throws IllegalStateException if the UUID does not have a short form
+     */
+    public int getShortUUID() {
+        if (!isShort()) {
+            throw new IllegalStateException("UUID does not have a short form: " + this);
+        }
+        return (int) (mostSignificantBits >>> 32);
+    }
+
+    /**
+     * Converts the UUID into a {@link UUID} object.
+     * @return UUID object
+     */
+    public UUID toUUID() {
+        return new UUID(mostSignificantBits, leastSignificantBits);
+    }
+
+    /**
+     * Returns the shortest text representation of the UUID, e.g. "180f", "1234180f" or
+     * "f000aa00-0451-4000-b000-000000000000" (lower case).
+     * @return the shortest text representation
+     */
+    public String toShortString() {
+        if (is16Bit()) {
+            return new String(format(mostSignificantBits >>> 32, 4, new char[4], 0));
+        } else if (isShort()) {
+            return new String(format(mostSignificantBits >>> 32, 8, new char[8], 0));
+        }
+        return toString();
+    }
+
+    /**
+     * Returns the full text representation of the UUID, e.g. "0000180f-0000-1000-8000-00805f9b34fb" (lower case).
+     * @return the full text representation
+     */
+    @Override
+    public String toString() {
+        char[] chars = new char[FULL_LENGTH];
+        format(mostSignificantBits >>> 32, 8, chars, 0);
+        chars[8] = '-';
+        format(mostSignificantBits >>> 16, 4, chars, 9);
+        chars[13] = '-';
+        format(mostSignificantBits, 4, chars, 14);
+        chars[18] = '-';
+        format(leastSignificantBits >>> 48, 4, chars, 19);
+        chars[23] = '-';
+        format(leastSignificantBits, 12, chars, 24);
+        return new String(chars);
+    }
+
+    @Override
+    public boolean equals(Object that) {
+        if (this == that) {
+            return true;
+        }
+        if (that == null || getClass() != that.getClass()) {
+            return false;
+        }
+        BluetoothUUID uuid = (BluetoothUUID) that;
+        return mostSignificantBits == uuid.mostSignificantBits && leastSignificantBits == uuid.leastSignificantBits;
+    }
+
+    @Override
+    public int hashCode() {
+        long hash = mostSignificantBits ^ leastSignificantBits;
+        return (int) (hash >> 32) ^ (int) hash;
+    }
+
+    @Override
+    public int compareTo(BluetoothUUID that) {
+        int result = Long.compareUnsigned(mostSignificantBits, that.mostSignificantBits);
+        return result != 0 ? result : Long.compareUnsigned(leastSignificantBits, that.leastSignificantBits);
+    }
+
+    static BluetoothUUID tryParse(CharSequence text, int from, int to) {
+        int pos = from;
+        long first = 0;
+        while (pos < to && pos - from < MAX_SHORT_DIGITS && hexDigit(text.charAt(pos)) >= 0) {
+            first = first << 4 | hexDigit(text.charAt(pos++));
+        }
+        int digits = pos - from;
+        if (digits < MIN_SHORT_DIGITS) {
+            return null;
+        }
+        if (pos == to) {
+            return new BluetoothUUID(first << 32 | BASE_UUID_MSB, BASE_UUID_LSB);
+        }
+        // the first group of the full form can be shorter as well, e.g. 180f-0000-1000-8000-00805f9b34fb
+        if (to - pos != SUFFIX_LENGTH) {
+            return null;
+        }
+        // -XXXX-XXXX-XXXX-XXXXXXXXXXXX
+        long msb = first;
+        long lsb = 0;
+        for (int i = 0; i < SUFFIX_LENGTH; i++) {
+            char ch = text.charAt(pos + i);
+            if (i == 0 || i == 5 || i == 10 || i == 15) {
+                if (ch != '-') {
+                    return null;
+                }
+                continue;
+            }
+            int digit = hexDigit(ch);
+            if (digit < 0) {
+                return null;
+            }
+            if (i < 10) {
+                msb = msb << 4 | digit;
+            } else {
+                lsb = lsb << 4 | digit;
+            }
+        }
+        return new BluetoothUUID(msb, lsb);
+    }
+
+    private static int hexDigit(char ch) {
+        if (ch >= '0' && ch <= '9') {
+            return ch - '0';
+        } else if (ch >= 'a' && ch <= 'f') {
+            return ch - 'a' + 10;
+        } else if (ch >= 'A' && ch <= 'F') {
+            return ch - 'A' + 10;
+        }
+        return -1;
+    }
+
+    static char[] format(long value, int digits, char[] target, int offset) {
+        for (int i = 0; i < digits; i++) {
+            target[offset + i] = DataConversionUtils.HEX_DIGITS[(int) (value >>> (digits - i - 1) * 4) & 0xF];
+        }
+        return target;
+    }
+
+}
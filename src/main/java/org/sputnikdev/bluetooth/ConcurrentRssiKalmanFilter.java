@@ -0,0 +1,184 @@
+package org.sputnikdev.bluetooth;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A thread safe variant of the {@link RssiKalmanFilter} that can be shared between multiple threads,
+ * e.g. when several adapters or HCI readers report the same device.
+ *
+ * <p>The filter is lock-free. Its state (estimated reading and error covariance) is kept in an immutable snapshot
+ * which is replaced atomically (compare-and-set), so that {@link #current()} never sees a torn state and concurrent
+ * readings are never lost: each reading is applied exactly once, in the order the snapshots are replaced.
+ */
+public class ConcurrentRssiKalmanFilter implements Filter<Short>, ShortFilter, DoubleFilter, StatefulFilter {
+
+    private static final double RSSI_PROCESS_NOISE = 0.125;
+    private static final double RSSI_MEASUREMENT_NOISE = 30;
+    private static final State INITIAL = new State(0, 0);
+
+    private final AtomicReference<State> state = new AtomicReference<>(INITIAL);
+    private volatile double processNoise;
+    private volatile double measurementNoise;
+
+    /**
+     * Creates an instance of the filter with some default settings (factors):
+     * <br>Process noise: 0.125
+     * <br>Measurement noise: 30.
+     */
+    public ConcurrentRssiKalmanFilter() {
+        this(RSSI_PROCESS_NOISE, RSSI_MEASUREMENT_NOISE);
+    }
+
+    /**
+     * Creates an instance of the filter with some provided settings (factors).
+     * @param processNoise process noise factor
+     * @param measurementNoise measurement noise factor
+     */
+    public ConcurrentRssiKalmanFilter(double processNoise, double measurementNoise) {
+        this.processNoise = processNoise;
+        this.measurementNoise = measurementNoise;
+    }
+
+    @Override
+    public Short next(Short next) {
+        return next(next.shortValue());
+    }
+
+    @Override
+    public short next(short next) {
+        return (short) next((double) next);
+    }
+
+    @Override
+    public double next(double next) {
+        while (true) {
+            State current = state.get();
+            State updated = current.next(next, processNoise, measurementNoise);
+            if (state.compareAndSet(current, updated)) {
+                return updated.rssi;
+            }
+        }
+    }
+
+    @Override
+    public Short current() {
+        return currentAsShort();
+    }
+
+    @Override
+    public short currentAsShort() {
+        return (short) currentAsDouble();
+    }
+
+    @Override
+    public double currentAsDouble() {
+        return state.get().rssi;
+    }
+
+    @Override
+    public void reset() {
+        state.set(INITIAL);
+    }
+
+    /**
+     * Takes a snapshot of the state of the filter.
+     * @return snapshot of the state
+     */
+    public KalmanFilterState snapshot() {
+        return snapshot(new KalmanFilterState());
+    }
+
+    @Override
+    public KalmanFilterState snapshot(KalmanFilterState snapshot) {
+        // the estimate and the error covariance are consistent, noise factors are not captured atomically with them
+        State current = state.get();
+        snapshot.setInitialized(current != INITIAL);
+        snapshot.setRssi(current.rssi);
+        snapshot.setErrorCovariance(current.errorCovariance);
+        snapshot.setProcessNoise(processNoise);
+        snapshot.setMeasurementNoise(measurementNoise);
+        snapshot.setTimestamp(0);
+        return snapshot;
+    }
+
+    @Override
+    public void restore(KalmanFilterState snapshot) {
+        processNoise = snapshot.getProcessNoise();
+        measurementNoise = snapshot.getMeasurementNoise();
+        state.set(snapshot.isInitialized()
+                ? new State(snapshot.getRssi(), snapshot.getErrorCovariance()) : INITIAL);
+    }
+
+    /**
+     * Copies the state of another filter (including noise factors) into this filter.
+     * @param other filter to copy the state from
+     */
+    public void copyFrom(ConcurrentRssiKalmanFilter other) {
+        processNoise = other.processNoise;
+        measurementNoise = other.measurementNoise;
+        // states are immutable, so they can be shared
+        state.set(other.state.get());
+    }
+
+    /**
+     * Returns the process noise factor.
+     * @return process noise factor
+     */
+    public double getProcessNoise() {
+        return processNoise;
+    }
+
+    /**
+     * Sets the process noise factor.
+     * @param processNoise process noise factor
+     */
+    public void setProcessNoise(double processNoise) {
+        this.processNoise = processNoise;
+    }
+
+    /**
+     * Returns the measurement noise factor.
+     * @return measurement noise factor
+     */
+    public double getMeasurementNoise() {
+        return measurementNoise;
+    }
+
+    /**
+     * Sets the measurement noise factor.
+     * @param measurementNoise measurement noise factor
+     */
+    public void setMeasurementNoise(double measurementNoise) {
+        this.measurementNoise = measurementNoise;
+    }
+
+    double getErrorCovariance() {
+        return state.get().errorCovariance;
+    }
+
+    private static final class State {
+
+        private final double rssi;
+        private final double errorCovariance;
+
+        private State(double rssi, double errorCovariance) {
+            this.rssi = rssi;
+            this.errorCovariance = errorCovariance;
+        }
+
+        private State next(double next, double processNoise, double measurementNoise) {
+            double interimRssi;
+            double interimCovariance;
+            if (this == INITIAL) {
+                interimRssi = next;
+                interimCovariance = 1;
+            } else {
+                interimRssi = rssi;
+                interimCovariance = errorCovariance + processNoise;
+            }
+            double kalmanGain = interimCovariance / (interimCovariance + measurementNoise);
+            return new State(interimRssi + kalmanGain * (next - interimRssi), (1 - kalmanGain) * interimCovariance);
+        }
+    }
+
+}
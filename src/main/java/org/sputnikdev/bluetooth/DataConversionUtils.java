@@ -1,9 +1,33 @@
 package org.sputnikdev.bluetooth;
 
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
+/**
+ * Utility class to convert binary data (e.g. GATT characteristic values) to text and back.
+ *
+ * <p>Hex conversions are table-driven, characters are written straight into a char array
+ * or a caller-supplied {@link StringBuilder}/{@link Appendable}. {@link ByteBuffer} variants work on the remaining
+ * bytes of a buffer without copying them and without changing the buffer position.
+ */
 public final class DataConversionUtils {
 
+    private static final int HEX_RADIX = 16;
+    // shared by all hex formatting of the package
+    static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    static final char[] UPPER_HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+    private static final byte[] HEX_VALUES = new byte[128];
+
+    static {
+        Arrays.fill(HEX_VALUES, (byte) -1);
+        for (int i = 0; i < HEX_RADIX; i++) {
+            HEX_VALUES[Character.forDigit(i, HEX_RADIX)] = (byte) i;
+            HEX_VALUES[Character.toUpperCase(Character.forDigit(i, HEX_RADIX))] = (byte) i;
+        }
+    }
+
     private DataConversionUtils() { }
 
     /**
@@ -13,6 +37,20 @@ public final class DataConversionUtils {
      * @return array text representation
      */
     public static String convert(byte[] raw, int radix) {
+        if (radix == HEX_RADIX) {
+            char[] chars = new char[formattedLength(raw.length)];
+            int index = 0;
+            chars[index++] = '[';
+            for (int i = 0; i < raw.length; i++) {
+                if (i > 0) {
+                    chars[index++] = ',';
+                    chars[index++] = ' ';
+                }
+                index = writeHex(raw[i], chars, index);
+            }
+            chars[index] = ']';
+            return new String(chars);
+        }
         String[] hexFormatted = new String[raw.length];
         int index = 0;
         for (byte b : raw) {
@@ -22,4 +60,248 @@ public final class DataConversionUtils {
         return Arrays.toString(hexFormatted);
     }
 
+    /**
+     * Converts the remaining bytes of a buffer to a text representation. Example: [01, 05, ab]
+     * The buffer position is not changed.
+     * @param buffer bytes buffer
+     * @param radix the radix to use in the string representation
+     * @return text representation of the remaining bytes
+     */
+    public static String convert(ByteBuffer buffer, int radix) {
+        int length = buffer.remaining();
+        if (radix != HEX_RADIX) {
+            byte[] raw = new byte[length];
+            buffer.duplicate().get(raw);
+            return convert(raw, radix);
+        }
+        char[] chars = new char[formattedLength(length)];
+        int index = 0;
+        chars[index++] = '[';
+        for (int i = 0; i < length; i++) {
+            if (i > 0) {
+                chars[index++] = ',';
+                chars[index++] = ' ';
+            }
+            index = writeHex(buffer.get(buffer.position() + i), chars, index);
+        }
+        chars[index] = ']';
+        return new String(chars);
+    }
+
+    /**
+     * Converts byte array to a hex string. Example: 0105ab
+     * @param raw bytes array
+     * @return hex string (lower case)
+     */
+    public static String toHex(byte[] raw) {
+        char[] chars = new char[raw.length * 2];
+        encodeHex(raw, 0, raw.length, chars, 0);
+        return new String(chars);
+    }
+
+    /**
+     * Converts the remaining bytes of a buffer to a hex string. Example: 0105ab
+     * The buffer position is not changed.
+     * @param buffer bytes buffer
+     * @return hex string (lower case)
+     */
+    public static String toHex(ByteBuffer buffer) {
+        return appendHex(buffer, new StringBuilder(buffer.remaining() * 2)).toString();
+    }
+
+    /**
+     * Encodes bytes into hex characters (lower case) and writes them into the provided char array.
+     * @param raw bytes array
+     * @param offset offset of the first byte to encode
+     * @param length number of bytes to encode
+     * @param target target char array, must have space for 2 * length characters
+     * @param targetOffset offset in the target char array
+     * @return offset in the target char array next to the last written character
+     */
+    public static int encodeHex(byte[] raw, int offset, int length, char[] target, int targetOffset) {
+        int index = targetOffset;
+        for (int i = offset; i < offset + length; i++) {
+            index = writeHex(raw[i], target, index);
+        }
+        return index;
+    }
+
+    /**
+     * Encodes bytes into hex characters (lower case) and appends them to the provided string builder.
+     * @param raw bytes array
+     * @param offset offset of the first byte to encode
+     * @param length number of bytes to encode
+     * @param builder target string builder
+     * @return the target string builder
+     */
+    public static StringBuilder appendHex(byte[] raw, int offset, int length, StringBuilder builder) {
+        builder.ensureCapacity(builder.length() + length * 2);
+        for (int i = offset; i < offset + length; i++) {
+            builder.append(HEX_DIGITS[raw[i] >> 4 & 0xF]).append(HEX_DIGITS[raw[i] & 0xF]);
+        }
+        return builder;
+    }
+
+    /**
+     * Encodes bytes into hex characters (lower case) and appends them to the provided appendable.
+     * @param raw bytes array
+     * @param offset offset of the first byte to encode
+     * @param length number of bytes to encode
+     * @param appendable target appendable, e.g. a writer
+     * @param <T> type of the appendable
+     * @return the target appendable
+     * @throws IOException if the appendable fails
+     */
+    public static <T extends Appendable> T appendHex(byte[] raw, int offset, int length, T appendable)
+            throws IOException {
+        for (int i = offset; i < offset + length; i++) {
+            appendable.append(HEX_DIGITS[raw[i] >> 4 & 0xF]).append(HEX_DIGITS[raw[i] & 0xF]);
+        }
+        return appendable;
+    }
+
+    /**
+     * Encodes the remaining bytes of a buffer into hex characters (lower case) and appends them
+     * to the provided string builder. The buffer position is not changed.
+     * @param buffer bytes buffer
+     * @param builder target string builder
+     * @return the target string builder
+     */
+    public static StringBuilder appendHex(ByteBuffer buffer, StringBuilder builder) {
+        if (buffer.hasArray()) {
+            return appendHex(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(), builder);
+        }
+        builder.ensureCapacity(builder.length() + buffer.remaining() * 2);
+        for (int i = buffer.position(); i < buffer.limit(); i++) {
+            byte value = buffer.get(i);
+            builder.append(HEX_DIGITS[value >> 4 & 0xF]).append(HEX_DIGITS[value & 0xF]);
+        }
+        return builder;
+    }
+
+    /**
+     * Parses a hex string into a byte array. Example: 0105ab or 0105AB
+     * @param hex hex string
+     * @return bytes array
+     * @throws NumberFormatException if the string is not a valid hex string
+     */
+    public static byte[] parseHex(CharSequence hex) {
+        byte[] raw = new byte[hexLength(hex)];
+        for (int i = 0; i < raw.length; i++) {
+            raw[i] = parseHexByte(hex, i * 2);
+        }
+        return raw;
+    }
+
+    /**
+     * Parses a hex string and puts the bytes into the provided buffer (starting at its current position).
+     * @param hex hex string
+     * @param target target buffer
+     * @return the target buffer
+     * @throws NumberFormatException if the string is not a valid hex string
+     * @throws BufferOverflowException if there is not enough space in the target buffer
+     */
+    public static ByteBuffer parseHex(CharSequence hex, ByteBuffer target) {
+        int length = hexLength(hex);
+        if (target.remaining() < length) {
+            throw new BufferOverflowException();
+        }
+        for (int i = 0; i < length; i++) {
+            target.put(parseHexByte(hex, i * 2));
+        }
+        return target;
+    }
+
+    /**
+     * Parses a text representation of a byte array (as produced by {@link #convert(byte[], int)}) back to bytes.
+     * Example: [01, 05, ab]
+     * @param text array text representation
+     * @param radix the radix used in the text representation
+     * @return bytes array
+     * @throws NumberFormatException if the text is not a valid array text representation
+     */
+    public static byte[] parse(CharSequence text, int radix) {
+        int end = text.length() - 1;
+        if (end < 1 || text.charAt(0) != '[' || text.charAt(end) != ']') {
+            throw new NumberFormatException("Invalid byte array: " + text);
+        }
+        int count = 1;
+        for (int i = 1; i < end; i++) {
+            if (text.charAt(i) == ',') {
+                count++;
+            }
+        }
+        int start = skipSpaces(text, 1, end);
+        if (start == end) {
+            return new byte[0];
+        }
+        byte[] raw = new byte[count];
+        for (int i = 0; i < count; i++) {
+            int stop = start;
+            while (stop < end && text.charAt(stop) != ',' && text.charAt(stop) != ' ') {
+                stop++;
+            }
+            raw[i] = parseByte(text, start, stop, radix);
+            stop = skipSpaces(text, stop, end);
+            if (i < count - 1 && (stop == end || text.charAt(stop) != ',')) {
+                throw new NumberFormatException("Invalid byte array: " + text);
+            }
+            start = skipSpaces(text, stop + 1, end);
+        }
+        if (start < end) {
+            throw new NumberFormatException("Invalid byte array: " + text);
+        }
+        return raw;
+    }
+
+    private static int writeHex(byte value, char[] target, int index) {
+        target[index] = HEX_DIGITS[value >> 4 & 0xF];
+        target[index + 1] = HEX_DIGITS[value & 0xF];
+        return index + 2;
+    }
+
+    private static int formattedLength(int length) {
+        // "[" + length * "xx" + (length - 1) * ", " + "]"
+        return length > 0 ? length * 4 : 2;
+    }
+
+    private static int hexLength(CharSequence hex) {
+        if (hex.length() % 2 != 0) {
+            throw new NumberFormatException("Invalid hex string (odd length): " + hex);
+        }
+        return hex.length() / 2;
+    }
+
+    private static byte parseByte(CharSequence text, int start, int end, int radix) {
+        if (radix == HEX_RADIX && end - start == 2) {
+            return parseHexByte(text, start);
+        }
+        int value = Integer.parseInt(text.subSequence(start, end).toString(), radix);
+        if (value < 0 || value > 0xFF) {
+            throw new NumberFormatException("Value out of byte range: " + value);
+        }
+        return (byte) value;
+    }
+
+    private static byte parseHexByte(CharSequence hex, int index) {
+        return (byte) (parseHexDigit(hex, index) << 4 | parseHexDigit(hex, index + 1));
+    }
+
+    private static int parseHexDigit(CharSequence hex, int index) {
+        char chr = hex.charAt(index);
+        int digit = chr < HEX_VALUES.length ? HEX_VALUES[chr] : -1;
+        if (digit < 0) {
+            throw new NumberFormatException("Invalid hex digit '" + chr + "' at " + index + ": " + hex);
+        }
+        return digit;
+    }
+
+    private static int skipSpaces(CharSequence text, int start, int end) {
+        int index = start;
+        while (index < end && text.charAt(index) == ' ') {
+            index++;
+        }
+        return index;
+    }
+
 }
@@ -0,0 +1,22 @@
+package org.sputnikdev.bluetooth;
+
+/**
+ * A primitive specialisation of the {@link Filter} interface for double readings,
+ * readings and estimated values are not boxed and not rounded.
+ */
+public interface DoubleFilter {
+
+    /**
+     * Returns current estimated reading (calculated on the previous step).
+     * @return current estimated reading
+     */
+    double currentAsDouble();
+
+    /**
+     * Applies the filter to the given reading.
+     * @param reading next reading
+     * @return processed/estimated value
+     */
+    double next(double reading);
+
+}
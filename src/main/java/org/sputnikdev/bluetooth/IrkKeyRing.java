@@ -0,0 +1,301 @@
+package org.sputnikdev.bluetooth;
+
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * A key ring of Identity Resolving Keys (IRK) that is used to resolve Resolvable Private Addresses (RPA)
+ * to identity addresses of bonded devices. See {@link AddressType#RESOLVABLE} for more info.
+ *
+ * <p>An RPA consists of a 24-bit random part (prand, the most significant half of the address) and a 24-bit hash
+ * (the least significant half). The address is resolved by a key if the random address hash function
+ * (ah, Bluetooth Core Specification, Vol 3, Part H, 2.2.2) of the key and prand equals to the hash.
+ *
+ * <p>Each key keeps its own initialised cipher, so that no cipher is created when addresses are resolved.
+ * Recently seen addresses (both resolved and not resolved) are cached for a configurable period of time,
+ * big key rings are scanned in parallel. The cache is split into segments, each segment evicts its least
+ * recently used address when it is full, so that the cost of caching stays constant however busy the scanner is.
+ * Changing keys invalidates the cache. The key ring is safe to be used by multiple threads.
+ *
+ * <p>All addresses are packed into the 48 least significant bits of a long,
+ * see {@link AddressUtils#parseAddress(CharSequence)}.
+ */
+public class IrkKeyRing {
+
+    /**
+     * Returned by {@link #resolve(long)} if the address cannot be resolved by any of the keys.
+     */
+    public static final long NOT_RESOLVED = -1;
+
+    private static final long DEFAULT_CACHE_TTL = TimeUnit.MINUTES.toMillis(15);
+    private static final int DEFAULT_PARALLEL_THRESHOLD = 128;
+    private static final int MAX_CACHE_SIZE = 10000;
+    private static final int CACHE_SEGMENTS = 16;
+    private static final int KEY_LENGTH = 16;
+
+    private final long cacheTtlNanos;
+    private final int parallelThreshold;
+    private final LongSupplier clock;
+    private final CacheSegment[] cache = new CacheSegment[CACHE_SEGMENTS];
+    private volatile Key[] keys = new Key[0];
+    // incremented whenever keys change, so that results of scans of outdated keys are not cached
+    private volatile int generation;
+
+    /**
+     * Creates a key ring with some default settings:
+     * <br>Cache TTL: 15 minutes (the default RPA rotation period)
+     * <br>Parallel scan threshold: 128 keys.
+     */
+    public IrkKeyRing() {
+        this(DEFAULT_CACHE_TTL, DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * Creates a key ring with some provided settings.
+     * @param cacheTtl period of time (in milliseconds) a resolution result is cached for
+     * @param parallelThreshold minimal number of keys in the ring to scan the keys in parallel
+     */
+    public IrkKeyRing(long cacheTtl, int parallelThreshold) {
+        this(cacheTtl, parallelThreshold, System::nanoTime);
+    }
+
+    IrkKeyRing(long cacheTtl, int parallelThreshold, LongSupplier clock) {
+        this.cacheTtlNanos = TimeUnit.MILLISECONDS.toNanos(cacheTtl);
+        this.parallelThreshold = parallelThreshold;
+        this.clock = clock;
+        for (int i = 0; i < CACHE_SEGMENTS; i++) {
+            cache[i] = new CacheSegment(MAX_CACHE_SIZE / CACHE_SEGMENTS);
+        }
+    }
+
+    /**
+     * Adds (or replaces) an Identity Resolving Key of a bonded device.
+     * @param identityAddress identity address of the device
+     * @param irk 128-bit Identity Resolving Key, the most significant octet first
+     */
+    public synchronized void addKey(long identityAddress, byte[] irk) {
+        Key key = new Key(identityAddress, irk);
+        Key[] current = keys;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i].identity == identityAddress) {
+                Key[] updated = current.clone();
+                updated[i] = key;
+                updateKeys(updated);
+                return;
+            }
+        }
+        Key[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = key;
+        updateKeys(updated);
+    }
+
+    /**
+     * Removes the Identity Resolving Key of a device.
+     * @param identityAddress identity address of the device
+     * @return true if the key has been removed, false if there was not a key for the device
+     */
+    public synchronized boolean removeKey(long identityAddress) {
+        Key[] current = keys;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i].identity == identityAddress) {
+                Key[] updated = new Key[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, updated.length - i);
+                updateKeys(updated);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of keys in the key ring.
+     * @return number of keys
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * Resolves a Resolvable Private Address to the identity address of a bonded device.
+     * @param address Bluetooth address
+     * @return identity address or null if the address cannot be resolved by any of the keys
+     */
+    public String resolve(String address) {
+        long identity = resolve(AddressUtils.parseAddress(address));
+        return identity != NOT_RESOLVED ? AddressUtils.formatAddress(identity) : null;
+    }
+
+    /**
+     * Resolves a Resolvable Private Address to the identity address of a bonded device.
+     * @param address packed Bluetooth address
+     * @return packed identity address or {@link #NOT_RESOLVED} if the address cannot be resolved by any of the keys
+     */
+    public long resolve(long address) {
+        long now = clock.getAsLong();
+        CacheSegment segment = segment(address);
+        synchronized (segment) {
+            Resolution cached = segment.get(address);
+            if (cached != null) {
+                if (now - cached.expires < 0) {
+                    return cached.identity;
+                }
+                segment.remove(address);
+            }
+        }
+        // the generation is read before the keys are scanned, see updateKeys
+        int scanned = generation;
+        long identity = scan(address);
+        synchronized (segment) {
+            if (scanned == generation) {
+                segment.put(address, new Resolution(identity, now + cacheTtlNanos));
+            }
+        }
+        return identity;
+    }
+
+    /**
+     * Removes expired entries from the cache of recently seen addresses.
+     */
+    public void evictExpired() {
+        long now = clock.getAsLong();
+        for (CacheSegment segment : cache) {
+            synchronized (segment) {
+                segment.values().removeIf(resolution -> now - resolution.expires >= 0);
+            }
+        }
+    }
+
+    /**
+     * Clears the cache of recently seen addresses.
+     */
+    public void clearCache() {
+        for (CacheSegment segment : cache) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of cached resolution results (including expired ones that are not evicted yet).
+     * @return number of cached resolution results
+     */
+    public int getCacheSize() {
+        int size = 0;
+        for (CacheSegment segment : cache) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * The random address hash function (ah) as defined in Bluetooth Core Specification, Vol 3, Part H, 2.2.2.
+     * @param irk 128-bit Identity Resolving Key, the most significant octet first
+     * @param prand 24-bit random part of an address
+     * @return 24-bit hash
+     */
+    public static int ah(byte[] irk, int prand) {
+        return new Key(0, irk).hash(prand);
+    }
+
+    private void updateKeys(Key[] updated) {
+        keys = updated;
+        // a concurrent scan either sees the new generation and does not cache its result,
+        // or caches it before the segment is cleared
+        generation++;
+        clearCache();
+    }
+
+    private CacheSegment segment(long address) {
+        int hash = Long.hashCode(address);
+        return cache[(hash ^ hash >>> 16) & (CACHE_SEGMENTS - 1)];
+    }
+
+    private long scan(long address) {
+        int prand = (int) (address >>> 24) & 0xFFFFFF;
+        int hash = (int) address & 0xFFFFFF;
+        Key[] current = keys;
+        if (current.length >= parallelThreshold) {
+            return Arrays.stream(current).parallel().filter(key -> key.hash(prand) == hash)
+                    .mapToLong(key -> key.identity).findAny().orElse(NOT_RESOLVED);
+        }
+        for (Key key : current) {
+            if (key.hash(prand) == hash) {
+                return key.identity;
+            }
+        }
+        return NOT_RESOLVED;
+    }
+
+    private static final class Key {
+
+        private final long identity;
+        private final Cipher cipher;
+        private final byte[] plaintext = new byte[KEY_LENGTH];
+        private final byte[] encrypted = new byte[KEY_LENGTH];
+
+        private Key(long identity, byte[] irk) {
+            if (irk.length != KEY_LENGTH) {
+                throw new IllegalArgumentException("Identity Resolving Key must be 128-bit long");
+            }
+            this.identity = identity;
+            try {
+                cipher = Cipher.getInstance("AES/ECB/NoPadding");
+                cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(irk, "AES"));
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private synchronized int hash(int prand) {
+            // r' = padding (104 zero bits) || prand, ah = e(k, r') mod 2^24
+            plaintext[13] = (byte) (prand >>> 16);
+            plaintext[14] = (byte) (prand >>> 8);
+            plaintext[15] = (byte) prand;
+            try {
+                cipher.doFinal(plaintext, 0, KEY_LENGTH, encrypted, 0);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+            return (encrypted[13] & 0xFF) << 16 | (encrypted[14] & 0xFF) << 8 | encrypted[15] & 0xFF;
+        }
+    }
+
+    private static final class Resolution {
+
+        private final long identity;
+        private final long expires;
+
+        private Resolution(long identity, long expires) {
+            this.identity = identity;
+            this.expires = expires;
+        }
+    }
+
+    private static final class CacheSegment extends LinkedHashMap<Long, Resolution> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int maxSize;
+
+        private CacheSegment(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Resolution> eldest) {
+            return size() > maxSize;
+        }
+    }
+
+}
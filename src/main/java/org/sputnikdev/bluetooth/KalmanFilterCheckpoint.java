@@ -0,0 +1,313 @@
+package org.sputnikdev.bluetooth;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+
+/**
+ * A binary checkpoint of the state of many Kalman filters keyed by device addresses, so that filters can be
+ * restored warm (see {@link StatefulFilter}) when an application restarts rather than converge from scratch.
+ *
+ * <p>The checkpoint file consists of a header and fixed size records, one per device:
+ * <pre>
+ * header:  magic (int), version (int), record size (int), reserved (int)
+ * record:  packed address (long, -1 for free records), flags (byte, bit 0 - initialized),
+ *          estimated RSSI, error covariance, process noise, measurement noise (double each),
+ *          wall clock time of the latest reading (long, nanoseconds since the epoch)
+ * </pre>
+ * All values are big-endian. The file is memory mapped and copied into memory in one go when the checkpoint
+ * is opened. Saved states are kept in memory and marked dirty, {@link #flush()} writes only dirty records
+ * (consecutive dirty records in one positional write) through the file channel, so that frequent flushes of
+ * a few changed filters stay cheap regardless of the total number of filters. Records of removed devices are
+ * reused.
+ *
+ * <p>Timestamps of filter states (see {@link TimedRssiKalmanFilter}) come from {@link System#nanoTime()}, whose
+ * origin changes when the JVM restarts. Therefore they are saved as wall clock time and rebased onto
+ * {@link System#nanoTime()} of the current JVM when they are loaded, so that restored filters see the real time
+ * elapsed since their latest readings, e.g. a time aware filter starts from scratch if the application has been
+ * down for longer than its maximum gap.
+ *
+ * <p>The checkpoint is not thread safe.
+ */
+public class KalmanFilterCheckpoint implements Closeable {
+
+    static final int MAGIC = 0x4B46_4350;
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_SIZE = 49;
+
+    private static final long FREE = -1;
+    private static final int INITIALIZED = 1;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final FileChannel channel;
+    // wall clock time (nanoseconds since the epoch) minus System.nanoTime()
+    private final long epochOffset;
+    private final Map<Long, Integer> index = new HashMap<>();
+    private final KalmanFilterState scratch = new KalmanFilterState();
+    private byte[] records;
+    private ByteBuffer buffer;
+    private int[] freeRecords;
+    private int freeCount;
+    private int recordCount;
+    private long[] dirty;
+    private boolean headerDirty;
+
+    private KalmanFilterCheckpoint(FileChannel channel, long epochOffset) throws IOException {
+        this.channel = channel;
+        this.epochOffset = epochOffset;
+        long size = channel.size();
+        recordCount = size > HEADER_SIZE ? (int) ((size - HEADER_SIZE) / RECORD_SIZE) : 0;
+        allocate(Math.max(INITIAL_CAPACITY, recordCount));
+        if (size == 0) {
+            headerDirty = true;
+            return;
+        }
+        ByteBuffer header = size >= HEADER_SIZE ? channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE) : null;
+        if (header == null || header.getInt(0) != MAGIC || header.getInt(4) != VERSION
+                || header.getInt(8) != RECORD_SIZE) {
+            throw new IOException("Not a filter checkpoint or unsupported version");
+        }
+        if (recordCount > 0) {
+            // a trailing partial record (if any) is ignored
+            channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, (long) recordCount * RECORD_SIZE)
+                    .get(records, 0, recordCount * RECORD_SIZE);
+        }
+        for (int record = recordCount - 1; record >= 0; record--) {
+            long address = buffer.getLong(record * RECORD_SIZE);
+            if (address == FREE) {
+                freeRecords[freeCount++] = record;
+            } else {
+                index.put(address, record);
+            }
+        }
+    }
+
+    /**
+     * Opens a checkpoint file, the file is created if it does not exist.
+     * @param path checkpoint file
+     * @return checkpoint
+     * @throws IOException if the file cannot be opened or it is not a checkpoint file
+     */
+    public static KalmanFilterCheckpoint open(Path path) throws IOException {
+        return open(path, TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis()) - System.nanoTime());
+    }
+
+    static KalmanFilterCheckpoint open(Path path, long epochOffset) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            return new KalmanFilterCheckpoint(channel, epochOffset);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Saves the state of a device filter.
+     * @param address packed device address
+     * @param state state of the filter
+     */
+    public void save(long address, KalmanFilterState state) {
+        if (!AddressUtils.isValidAddress(address)) {
+            throw new IllegalArgumentException("Invalid packed address: " + address);
+        }
+        Integer existing = index.get(address);
+        int record;
+        if (existing != null) {
+            record = existing;
+        } else {
+            record = allocateRecord();
+            index.put(address, record);
+        }
+        int offset = record * RECORD_SIZE;
+        buffer.putLong(offset, address);
+        buffer.put(offset + 8, (byte) (state.isInitialized() ? INITIALIZED : 0));
+        buffer.putDouble(offset + 9, state.getRssi());
+        buffer.putDouble(offset + 17, state.getErrorCovariance());
+        buffer.putDouble(offset + 25, state.getProcessNoise());
+        buffer.putDouble(offset + 33, state.getMeasurementNoise());
+        buffer.putLong(offset + 41, state.getTimestamp() + epochOffset);
+        markDirty(record);
+    }
+
+    /**
+     * Saves states of device filters.
+     * @param filters device filters keyed by packed device addresses
+     */
+    public void saveAll(Map<Long, ? extends StatefulFilter> filters) {
+        for (Map.Entry<Long, ? extends StatefulFilter> entry : filters.entrySet()) {
+            save(entry.getKey(), entry.getValue().snapshot(scratch));
+        }
+    }
+
+    /**
+     * Loads the saved state of a device filter, its timestamp is rebased onto {@link System#nanoTime()}.
+     * @param address packed device address
+     * @param state state to fill
+     * @return true if the state of the device has been saved, false otherwise
+     */
+    public boolean load(long address, KalmanFilterState state) {
+        Integer record = index.get(address);
+        if (record == null) {
+            return false;
+        }
+        read(record, state);
+        return true;
+    }
+
+    /**
+     * Restores all saved filters.
+     * @param filters a function that returns the filter of a device by its packed address (null to skip the device)
+     * @return number of restored filters
+     */
+    public int restoreAll(LongFunction<? extends StatefulFilter> filters) {
+        int restored = 0;
+        for (int record = 0; record < recordCount; record++) {
+            long address = buffer.getLong(record * RECORD_SIZE);
+            if (address == FREE) {
+                continue;
+            }
+            StatefulFilter filter = filters.apply(address);
+            if (filter != null) {
+                read(record, scratch);
+                filter.restore(scratch);
+                restored++;
+            }
+        }
+        return restored;
+    }
+
+    /**
+     * Removes the saved state of a device filter.
+     * @param address packed device address
+     * @return true if the state has been removed, false if the state of the device has not been saved
+     */
+    public boolean remove(long address) {
+        Integer record = index.remove(address);
+        if (record == null) {
+            return false;
+        }
+        buffer.putLong(record * RECORD_SIZE, FREE);
+        freeRecords[freeCount++] = record;
+        markDirty(record);
+        return true;
+    }
+
+    /**
+     * Returns the number of saved device filters.
+     * @return number of saved device filters
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Writes changed (dirty) records to the file and forces them to the storage device.
+     * @return number of written records
+     * @throws IOException if an I/O error occurs
+     */
+    public int flush() throws IOException {
+        if (headerDirty) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, RECORD_SIZE);
+            write(header, 0);
+            headerDirty = false;
+        }
+        int written = 0;
+        int record = nextDirty(0);
+        while (record >= 0) {
+            int end = record + 1;
+            while (end < recordCount && isDirty(end)) {
+                end++;
+            }
+            write(ByteBuffer.wrap(records, record * RECORD_SIZE, (end - record) * RECORD_SIZE),
+                    HEADER_SIZE + (long) record * RECORD_SIZE);
+            written += end - record;
+            record = nextDirty(end);
+        }
+        Arrays.fill(dirty, 0);
+        channel.force(false);
+        return written;
+    }
+
+    /**
+     * Flushes changed records and closes the checkpoint file.
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void read(int record, KalmanFilterState state) {
+        int offset = record * RECORD_SIZE;
+        state.setInitialized((buffer.get(offset + 8) & INITIALIZED) != 0);
+        state.setRssi(buffer.getDouble(offset + 9));
+        state.setErrorCovariance(buffer.getDouble(offset + 17));
+        state.setProcessNoise(buffer.getDouble(offset + 25));
+        state.setMeasurementNoise(buffer.getDouble(offset + 33));
+        state.setTimestamp(buffer.getLong(offset + 41) - epochOffset);
+    }
+
+    private void write(ByteBuffer source, long position) throws IOException {
+        while (source.hasRemaining()) {
+            position += channel.write(source, position);
+        }
+    }
+
+    private int allocateRecord() {
+        if (freeCount > 0) {
+            return freeRecords[--freeCount];
+        }
+        if (recordCount == freeRecords.length) {
+            allocate(recordCount << 1);
+        }
+        return recordCount++;
+    }
+
+    private void allocate(int capacity) {
+        records = records != null ? Arrays.copyOf(records, capacity * RECORD_SIZE) : new byte[capacity * RECORD_SIZE];
+        buffer = ByteBuffer.wrap(records);
+        freeRecords = freeRecords != null ? Arrays.copyOf(freeRecords, capacity) : new int[capacity];
+        dirty = dirty != null ? Arrays.copyOf(dirty, (capacity + 63) >>> 6) : new long[(capacity + 63) >>> 6];
+    }
+
+    private void markDirty(int record) {
+        dirty[record >>> 6] |= 1L << record;
+    }
+
+    private boolean isDirty(int record) {
+        return (dirty[record >>> 6] & 1L << record) != 0;
+    }
+
+    private int nextDirty(int from) {
+        int word = from >>> 6;
+        if (word >= dirty.length) {
+            return -1;
+        }
+        long bits = dirty[word] & -1L << from;
+        while (bits == 0) {
+            if (++word == dirty.length) {
+                return -1;
+            }
+            bits = dirty[word];
+        }
+        int record = (word << 6) + Long.numberOfTrailingZeros(bits);
+        return record < recordCount ? record : -1;
+    }
+
+}
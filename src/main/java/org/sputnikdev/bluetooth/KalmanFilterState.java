@@ -0,0 +1,114 @@
+package org.sputnikdev.bluetooth;
+
+/**
+ * A mutable snapshot of the state of a Kalman filter (see {@link RssiKalmanFilter#snapshot(KalmanFilterState)}).
+ * Snapshots can be reused, so that filters can be saved and restored (e.g. when filter instances are pooled
+ * and recycled for different devices) without allocating any objects.
+ */
+public final class KalmanFilterState {
+
+    private boolean initialized;
+    private double rssi;
+    private double errorCovariance;
+    private double processNoise;
+    private double measurementNoise;
+    private long timestamp;
+
+    /**
+     * Checks whether the filter has received any readings.
+     * @return true if the filter has received any readings, false otherwise
+     */
+    public boolean isInitialized() {
+        return initialized;
+    }
+
+    /**
+     * Sets whether the filter has received any readings.
+     * @param initialized true if the filter has received any readings
+     */
+    public void setInitialized(boolean initialized) {
+        this.initialized = initialized;
+    }
+
+    /**
+     * Returns the estimated reading.
+     * @return estimated reading
+     */
+    public double getRssi() {
+        return rssi;
+    }
+
+    /**
+     * Sets the estimated reading.
+     * @param rssi estimated reading
+     */
+    public void setRssi(double rssi) {
+        this.rssi = rssi;
+    }
+
+    /**
+     * Returns the error covariance.
+     * @return error covariance
+     */
+    public double getErrorCovariance() {
+        return errorCovariance;
+    }
+
+    /**
+     * Sets the error covariance.
+     * @param errorCovariance error covariance
+     */
+    public void setErrorCovariance(double errorCovariance) {
+        this.errorCovariance = errorCovariance;
+    }
+
+    /**
+     * Returns the process noise factor.
+     * @return process noise factor
+     */
+    public double getProcessNoise() {
+        return processNoise;
+    }
+
+    /**
+     * Sets the process noise factor.
+     * @param processNoise process noise factor
+     */
+    public void setProcessNoise(double processNoise) {
+        this.processNoise = processNoise;
+    }
+
+    /**
+     * Returns the measurement noise factor.
+     * @return measurement noise factor
+     */
+    public double getMeasurementNoise() {
+        return measurementNoise;
+    }
+
+    /**
+     * Sets the measurement noise factor.
+     * @param measurementNoise measurement noise factor
+     */
+    public void setMeasurementNoise(double measurementNoise) {
+        this.measurementNoise = measurementNoise;
+    }
+
+    /**
+     * Returns the timestamp of the latest reading, only time aware filters (see {@link TimedRssiKalmanFilter})
+     * keep track of it, other filters set it to 0.
+     * @return timestamp of the latest reading in nanoseconds
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Sets the timestamp of the latest reading.
+     * @param timestamp timestamp of the latest reading in nanoseconds
+     */
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+}
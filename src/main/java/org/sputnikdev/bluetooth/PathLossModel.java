@@ -0,0 +1,79 @@
+package org.sputnikdev.bluetooth;
+
+/**
+ * A log-distance path loss model to estimate distance to a device by its RSSI:
+ * <br>distance = 10 ^ ((txPower - rssi) / (10 * exponent))
+ * <br>where txPower is the RSSI measured at 1 meter from the device (calibrated TX power)
+ * and exponent is the path loss exponent of the environment (2 for free space, 2.7 - 4 indoors).
+ *
+ * <p>In order to not compute a power function for each reading, distances are precomputed for each whole dBm
+ * in the range from -128 to 127 dBm, readings in between are linearly interpolated (the relative error of the
+ * interpolation is below 0.3% for exponents from 1.5, which is much less than the RSSI noise), readings outside
+ * of the range are clamped. Models are immutable, so that a model can be shared by many devices.
+ */
+public final class PathLossModel {
+
+    /**
+     * A model with some default settings:
+     * <br>TX power: -59 dBm
+     * <br>Path loss exponent: 2.
+     */
+    public static final PathLossModel DEFAULT = new PathLossModel(-59, 2);
+
+    private static final int MIN_RSSI = -128;
+    private static final int MAX_RSSI = 127;
+
+    private final double txPower;
+    private final double exponent;
+    private final double[] distances = new double[MAX_RSSI - MIN_RSSI + 1];
+
+    /**
+     * Creates a model with provided settings.
+     * @param txPower RSSI (dBm) measured at 1 meter from the device
+     * @param exponent path loss exponent
+     */
+    public PathLossModel(double txPower, double exponent) {
+        if (!(exponent > 0)) {
+            throw new IllegalArgumentException("Path loss exponent must be positive: " + exponent);
+        }
+        this.txPower = txPower;
+        this.exponent = exponent;
+        for (int i = 0; i < distances.length; i++) {
+            distances[i] = Math.pow(10, (txPower - MIN_RSSI - i) / (10 * exponent));
+        }
+    }
+
+    /**
+     * Estimates distance to a device by its RSSI.
+     * @param rssi RSSI (dBm)
+     * @return estimated distance in meters
+     */
+    public double getDistance(double rssi) {
+        double position = rssi - MIN_RSSI;
+        if (position <= 0) {
+            return distances[0];
+        }
+        if (position >= distances.length - 1) {
+            return distances[distances.length - 1];
+        }
+        int index = (int) position;
+        return distances[index] + (position - index) * (distances[index + 1] - distances[index]);
+    }
+
+    /**
+     * Returns the RSSI measured at 1 meter from the device.
+     * @return TX power (dBm)
+     */
+    public double getTxPower() {
+        return txPower;
+    }
+
+    /**
+     * Returns the path loss exponent.
+     * @return path loss exponent
+     */
+    public double getExponent() {
+        return exponent;
+    }
+
+}
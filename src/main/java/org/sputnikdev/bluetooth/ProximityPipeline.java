@@ -0,0 +1,143 @@
+package org.sputnikdev.bluetooth;
+
+/**
+ * A pipeline that estimates proximity of a device by its raw RSSI readings:
+ * <br>raw RSSI -&gt; RSSI filter (e.g. {@link RssiKalmanFilter}) -&gt; distance ({@link PathLossModel})
+ * -&gt; proximity zone ({@link ProximityZones}).
+ *
+ * <p>Each device gets its own pipeline, as the RSSI filter and the current zone are stateful, whereas models and
+ * zones are immutable and can be shared by many devices or changed per device (e.g. once TX power of the device
+ * is known). Readings are processed without allocating any objects, readings of many devices can be processed
+ * at once by {@link #next(ProximityPipeline[], short[], int, double[], int[])}.
+ *
+ * <p>The pipeline is not thread safe.
+ */
+public class ProximityPipeline {
+
+    private final DoubleFilter rssiFilter;
+    private PathLossModel model;
+    private ProximityZones zones;
+    private double distance = Double.NaN;
+    private int zone = ProximityZones.NO_ZONE;
+
+    /**
+     * Creates a pipeline with some default settings: {@link RssiKalmanFilter} with default factors,
+     * {@link PathLossModel#DEFAULT} and {@link ProximityZones#DEFAULT}.
+     */
+    public ProximityPipeline() {
+        this(new RssiKalmanFilter(), PathLossModel.DEFAULT, ProximityZones.DEFAULT);
+    }
+
+    /**
+     * Creates a pipeline with provided stages.
+     * @param rssiFilter filter to smooth raw RSSI readings
+     * @param model path loss model to estimate distance
+     * @param zones proximity zones
+     */
+    public ProximityPipeline(DoubleFilter rssiFilter, PathLossModel model, ProximityZones zones) {
+        if (rssiFilter == null || model == null || zones == null) {
+            throw new IllegalArgumentException("Pipeline stages must be specified");
+        }
+        this.rssiFilter = rssiFilter;
+        this.model = model;
+        this.zones = zones;
+    }
+
+    /**
+     * Processes a raw RSSI reading.
+     * @param rssi raw RSSI reading
+     * @return new proximity zone of the device
+     */
+    public int next(short rssi) {
+        distance = model.getDistance(rssiFilter.next(rssi));
+        zone = zones.classify(zone, distance);
+        return zone;
+    }
+
+    /**
+     * Processes a batch of raw RSSI readings of many devices. Readings are processed in order,
+     * so that a device can have multiple readings in the same batch.
+     * @param pipelines device pipelines, one per reading
+     * @param readings raw RSSI readings
+     * @param length number of readings in the batch
+     * @param distances estimated distances, one per reading (optional, can be null)
+     * @param zones new proximity zones, one per reading (optional, can be null)
+     */
+    public static void next(ProximityPipeline[] pipelines, short[] readings, int length,
+                            double[] distances, int[] zones) {
+        for (int i = 0; i < length; i++) {
+            ProximityPipeline pipeline = pipelines[i];
+            int zone = pipeline.next(readings[i]);
+            if (distances != null) {
+                distances[i] = pipeline.distance;
+            }
+            if (zones != null) {
+                zones[i] = zone;
+            }
+        }
+    }
+
+    /**
+     * Returns current smoothed RSSI.
+     * @return current smoothed RSSI
+     */
+    public double getRssi() {
+        return rssiFilter.currentAsDouble();
+    }
+
+    /**
+     * Returns current estimated distance.
+     * @return estimated distance in meters or NaN if the pipeline has not received any readings yet
+     */
+    public double getDistance() {
+        return distance;
+    }
+
+    /**
+     * Returns current proximity zone.
+     * @return proximity zone or {@link ProximityZones#NO_ZONE} if the pipeline has not received any readings yet
+     */
+    public int getZone() {
+        return zone;
+    }
+
+    /**
+     * Returns the path loss model.
+     * @return path loss model
+     */
+    public PathLossModel getModel() {
+        return model;
+    }
+
+    /**
+     * Sets the path loss model, the new model applies to the next readings.
+     * @param model path loss model
+     */
+    public void setModel(PathLossModel model) {
+        if (model == null) {
+            throw new IllegalArgumentException("Model must be specified");
+        }
+        this.model = model;
+    }
+
+    /**
+     * Returns proximity zones.
+     * @return proximity zones
+     */
+    public ProximityZones getZones() {
+        return zones;
+    }
+
+    /**
+     * Sets proximity zones, the device is classified from scratch on the next reading.
+     * @param zones proximity zones
+     */
+    public void setZones(ProximityZones zones) {
+        if (zones == null) {
+            throw new IllegalArgumentException("Zones must be specified");
+        }
+        this.zones = zones;
+        this.zone = ProximityZones.NO_ZONE;
+    }
+
+}
@@ -0,0 +1,99 @@
+package org.sputnikdev.bluetooth;
+
+import java.util.Arrays;
+
+/**
+ * Proximity zones defined by distance boundaries, e.g. boundaries {0.5, 3} define three zones:
+ * 0 (immediate, closer than 0.5 m), 1 (near, from 0.5 m to 3 m) and 2 (far, 3 m and further).
+ *
+ * <p>Zones are classified with hysteresis: a device leaves its current zone only if the estimated distance crosses
+ * a boundary of the zone by more than the hysteresis margin, so that a device that stays close to a boundary
+ * does not flap between two zones. Zones are immutable, so that they can be shared by many devices.
+ */
+public final class ProximityZones {
+
+    /**
+     * Returned by {@link #classify(int, double)} if the distance is unknown (NaN).
+     */
+    public static final int NO_ZONE = -1;
+
+    /**
+     * Immediate (closer than 0.5 m), near (from 0.5 m to 3 m) and far zones with a hysteresis margin of 0.25 m.
+     */
+    public static final ProximityZones DEFAULT = new ProximityZones(0.25, 0.5, 3);
+
+    private final double hysteresis;
+    private final double[] boundaries;
+
+    /**
+     * Creates zones with provided settings.
+     * @param hysteresis hysteresis margin in meters
+     * @param boundaries ascending distance boundaries of zones in meters
+     */
+    public ProximityZones(double hysteresis, double... boundaries) {
+        if (!(hysteresis >= 0)) {
+            throw new IllegalArgumentException("Hysteresis must not be negative: " + hysteresis);
+        }
+        for (int i = 0; i < boundaries.length; i++) {
+            if (!(boundaries[i] > (i > 0 ? boundaries[i - 1] : 0))) {
+                throw new IllegalArgumentException("Boundaries must be positive and ascending: "
+                        + Arrays.toString(boundaries));
+            }
+        }
+        this.hysteresis = hysteresis;
+        this.boundaries = boundaries.clone();
+    }
+
+    /**
+     * Classifies a distance.
+     * @param zone current zone of the device or {@link #NO_ZONE} if the device has not been classified yet
+     * @param distance estimated distance in meters
+     * @return new zone of the device
+     */
+    public int classify(int zone, double distance) {
+        if (distance != distance) {
+            return NO_ZONE;
+        }
+        if (zone < 0 || zone > boundaries.length) {
+            // no hysteresis for devices that do not have a zone yet
+            int result = 0;
+            while (result < boundaries.length && distance >= boundaries[result]) {
+                result++;
+            }
+            return result;
+        }
+        int result = zone;
+        while (result < boundaries.length && distance >= boundaries[result] + hysteresis) {
+            result++;
+        }
+        while (result > 0 && distance < boundaries[result - 1] - hysteresis) {
+            result--;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of zones.
+     * @return number of zones
+     */
+    public int getZoneCount() {
+        return boundaries.length + 1;
+    }
+
+    /**
+     * Returns the hysteresis margin.
+     * @return hysteresis margin in meters
+     */
+    public double getHysteresis() {
+        return hysteresis;
+    }
+
+    /**
+     * Returns distance boundaries of zones.
+     * @return ascending distance boundaries in meters
+     */
+    public double[] getBoundaries() {
+        return boundaries.clone();
+    }
+
+}
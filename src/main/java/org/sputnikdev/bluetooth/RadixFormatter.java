@@ -0,0 +1,161 @@
+package org.sputnikdev.bluetooth;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * A streaming formatter of byte arrays, produces the same format as {@link DataConversionUtils#convert(byte[], int)},
+ * e.g. [01, 05, ab], however bytes are zero padded to the number of digits of 255 in the given radix
+ * (e.g. 8 digits for binary, 3 digits for decimal).
+ *
+ * <p>Formatted text is written in fixed size chunks to a {@link Writer}, an {@link OutputStream}
+ * or a {@link WritableByteChannel}, so that memory consumption is bounded regardless of the payload size.
+ * The formatter can also truncate long payloads for log-safe output, e.g. [01, 05, ... 1022 more bytes].
+ *
+ * <p>The formatter is immutable and safe to be used by multiple threads.
+ */
+public class RadixFormatter {
+
+    private static final int CHUNK_SIZE = 4096;
+
+    private final int width;
+    private final int maxBytes;
+    // all 256 byte values formatted, each value takes "width" chars
+    private final char[] digits;
+
+    /**
+     * Creates a formatter that does not truncate payloads.
+     * @param radix the radix to use in the text representation
+     */
+    public RadixFormatter(int radix) {
+        this(radix, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a formatter that truncates payloads to the given number of bytes.
+     * @param radix the radix to use in the text representation
+     * @param maxBytes maximum number of bytes to format, the rest is replaced with a "... N more bytes" marker
+     */
+    public RadixFormatter(int radix, int maxBytes) {
+        if (radix < Character.MIN_RADIX || radix > Character.MAX_RADIX) {
+            throw new IllegalArgumentException("Unsupported radix: " + radix);
+        }
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Maximum number of bytes must not be negative: " + maxBytes);
+        }
+        this.width = Integer.toString(0xFF, radix).length();
+        this.maxBytes = maxBytes;
+        this.digits = new char[256 * width];
+        for (int value = 0; value < 256; value++) {
+            String formatted = Integer.toString(value, radix);
+            int offset = value * width + width - formatted.length();
+            Arrays.fill(digits, value * width, offset, '0');
+            formatted.getChars(0, formatted.length(), digits, offset);
+        }
+    }
+
+    /**
+     * Formats a byte array.
+     * @param raw bytes array
+     * @return text representation
+     */
+    public String format(byte[] raw) {
+        StringWriter writer = new StringWriter();
+        try {
+            format(ByteBuffer.wrap(raw), writer);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Formats the remaining bytes of a buffer and writes the text to a writer.
+     * The buffer position is not changed.
+     * @param buffer bytes buffer
+     * @param writer target writer
+     * @throws IOException if the writer fails
+     */
+    public void format(ByteBuffer buffer, Writer writer) throws IOException {
+        format(buffer, writer::write);
+    }
+
+    /**
+     * Formats the remaining bytes of a buffer and writes the text (US-ASCII) to an output stream.
+     * The buffer position is not changed.
+     * @param buffer bytes buffer
+     * @param stream target output stream
+     * @throws IOException if the output stream fails
+     */
+    public void format(ByteBuffer buffer, OutputStream stream) throws IOException {
+        byte[] bytes = new byte[CHUNK_SIZE];
+        format(buffer, (chars, offset, length) -> stream.write(bytes, 0, toAscii(chars, length, bytes)));
+    }
+
+    /**
+     * Formats the remaining bytes of a buffer and writes the text (US-ASCII) to a channel.
+     * The buffer position is not changed.
+     * @param buffer bytes buffer
+     * @param channel target channel
+     * @throws IOException if the channel fails
+     */
+    public void format(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+        byte[] bytes = new byte[CHUNK_SIZE];
+        ByteBuffer chunk = ByteBuffer.wrap(bytes);
+        format(buffer, (chars, offset, length) -> {
+            ((Buffer) chunk).clear().limit(toAscii(chars, length, bytes));
+            while (chunk.hasRemaining()) {
+                channel.write(chunk);
+            }
+        });
+    }
+
+    private void format(ByteBuffer buffer, Sink sink) throws IOException {
+        char[] chunk = new char[CHUNK_SIZE];
+        int position = buffer.position();
+        int length = buffer.remaining();
+        int formatted = Math.min(length, maxBytes);
+        int index = 0;
+        chunk[index++] = '[';
+        for (int i = 0; i < formatted; i++) {
+            if (index + width + 2 > CHUNK_SIZE) {
+                sink.write(chunk, 0, index);
+                index = 0;
+            }
+            if (i > 0) {
+                chunk[index++] = ',';
+                chunk[index++] = ' ';
+            }
+            System.arraycopy(digits, (buffer.get(position + i) & 0xFF) * width, chunk, index, width);
+            index += width;
+        }
+        String tail = "]";
+        if (formatted < length) {
+            tail = (formatted > 0 ? ", ... " : "... ") + (length - formatted) + " more bytes]";
+        }
+        if (index + tail.length() > CHUNK_SIZE) {
+            sink.write(chunk, 0, index);
+            index = 0;
+        }
+        tail.getChars(0, tail.length(), chunk, index);
+        sink.write(chunk, 0, index + tail.length());
+    }
+
+    private static int toAscii(char[] chars, int length, byte[] target) {
+        for (int i = 0; i < length; i++) {
+            target[i] = (byte) chars[i];
+        }
+        return length;
+    }
+
+    private interface Sink {
+        void write(char[] chars, int offset, int length) throws IOException;
+    }
+
+}
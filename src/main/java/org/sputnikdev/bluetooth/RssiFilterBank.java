@@ -0,0 +1,315 @@
+package org.sputnikdev.bluetooth;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * A bank of Kalman filters to smooth RSSI readings of many devices at once. The bank applies exactly the same
+ * logic as {@link RssiKalmanFilter}, but instead of keeping a filter object per device, the state of all filters
+ * (estimates, error covariances, noise factors) is stored in parallel primitive arrays indexed by slots.
+ *
+ * <p>A device gets a slot by its packed address (see {@link AddressUtils#parseAddress(CharSequence)}),
+ * the address to slot index is a primitive open addressing hash table, so that neither lookups nor updates
+ * allocate any objects. Slots are reused once released or evicted, arrays grow when the bank is full.
+ *
+ * <p>The batch {@link #update(int[], short[], int)} method is a tight, branch-free loop, however, as slots are
+ * indirect indexes, the JIT can use conditional moves but not SIMD instructions for it.
+ *
+ * <p>The bank is not thread safe.
+ */
+public class RssiFilterBank {
+
+    /**
+     * Returned by {@link #find(long)} if there is not a slot for the address.
+     */
+    public static final int NO_SLOT = -1;
+
+    private static final double RSSI_PROCESS_NOISE = 0.125;
+    private static final double RSSI_MEASUREMENT_NOISE = 30;
+    private static final int DEFAULT_CAPACITY = 64;
+    // not a valid packed address, marks free slots and free index cells
+    private static final long FREE = -1;
+
+    private final double defaultProcessNoise;
+    private final double defaultMeasurementNoise;
+    private final LongSupplier clock;
+
+    // slot storage (struct of arrays)
+    private double[] estimates;
+    private double[] covariances;
+    private double[] processNoises;
+    private double[] measurementNoises;
+    private long[] lastUpdates;
+    private long[] addresses;
+    private int[] freeSlots;
+    private int freeCount;
+    private int highWaterMark;
+    private int size;
+
+    // address to slot index (open addressing, linear probing)
+    private long[] indexKeys;
+    private int[] indexSlots;
+
+    /**
+     * Creates a bank of filters with some default settings (factors):
+     * <br>Process noise: 0.125
+     * <br>Measurement noise: 30.
+     */
+    public RssiFilterBank() {
+        this(DEFAULT_CAPACITY, RSSI_PROCESS_NOISE, RSSI_MEASUREMENT_NOISE);
+    }
+
+    /**
+     * Creates a bank of filters with some provided settings (factors).
+     * @param capacity initial number of slots
+     * @param processNoise default process noise factor
+     * @param measurementNoise default measurement noise factor
+     */
+    public RssiFilterBank(int capacity, double processNoise, double measurementNoise) {
+        this(capacity, processNoise, measurementNoise, System::nanoTime);
+    }
+
+    RssiFilterBank(int capacity, double processNoise, double measurementNoise, LongSupplier clock) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.defaultProcessNoise = processNoise;
+        this.defaultMeasurementNoise = measurementNoise;
+        this.clock = clock;
+        allocateSlots(capacity);
+        allocateIndex(Integer.highestOneBit(capacity) << 2);
+    }
+
+    /**
+     * Returns the slot of a device, a new slot is allocated if the device does not have one yet.
+     * @param address packed device address
+     * @return slot of the device
+     */
+    public int acquire(long address) {
+        if (!AddressUtils.isValidAddress(address)) {
+            throw new IllegalArgumentException("Invalid packed address: " + address);
+        }
+        int slot = find(address);
+        if (slot != NO_SLOT) {
+            return slot;
+        }
+        if (size + 1 << 1 > indexKeys.length) {
+            allocateIndex(indexKeys.length << 1);
+        }
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (highWaterMark == addresses.length) {
+                allocateSlots(addresses.length << 1);
+            }
+            slot = highWaterMark++;
+        }
+        addresses[slot] = address;
+        estimates[slot] = Double.NaN;
+        covariances[slot] = 0;
+        processNoises[slot] = defaultProcessNoise;
+        measurementNoises[slot] = defaultMeasurementNoise;
+        lastUpdates[slot] = clock.getAsLong();
+        size++;
+        indexPut(address, slot);
+        return slot;
+    }
+
+    /**
+     * Finds the slot of a device.
+     * @param address packed device address
+     * @return slot of the device or {@link #NO_SLOT} if the device does not have a slot
+     */
+    public int find(long address) {
+        int mask = indexKeys.length - 1;
+        for (int cell = hash(address) & mask; indexKeys[cell] != FREE; cell = (cell + 1) & mask) {
+            if (indexKeys[cell] == address) {
+                return indexSlots[cell];
+            }
+        }
+        return NO_SLOT;
+    }
+
+    /**
+     * Releases a slot, the slot can be reused for another device afterwards.
+     * @param slot slot to release
+     */
+    public void release(int slot) {
+        long address = addresses[slot];
+        if (address == FREE) {
+            return;
+        }
+        indexRemove(address);
+        addresses[slot] = FREE;
+        freeSlots[freeCount++] = slot;
+        size--;
+    }
+
+    /**
+     * Releases slots that have not been updated for the given period of time.
+     * @param maxIdle maximum idle time
+     * @param unit time unit of the maximum idle time
+     * @return number of released slots
+     */
+    public int evictStale(long maxIdle, TimeUnit unit) {
+        long threshold = clock.getAsLong() - unit.toNanos(maxIdle);
+        int evicted = 0;
+        for (int slot = 0; slot < highWaterMark; slot++) {
+            if (addresses[slot] != FREE && lastUpdates[slot] - threshold < 0) {
+                release(slot);
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Applies the filter of a slot to the given reading.
+     * @param slot device slot
+     * @param rssi next reading
+     * @return estimated value
+     */
+    public double update(int slot, short rssi) {
+        lastUpdates[slot] = clock.getAsLong();
+        return apply(slot, rssi);
+    }
+
+    /**
+     * Applies filters to a batch of readings.
+     * @param slots device slots
+     * @param rssi readings, one per slot
+     */
+    public void update(int[] slots, short[] rssi) {
+        update(slots, rssi, slots.length);
+    }
+
+    /**
+     * Applies filters to a batch of readings.
+     * @param slots device slots
+     * @param rssi readings, one per slot
+     * @param length number of readings in the batch
+     */
+    public void update(int[] slots, short[] rssi, int length) {
+        long now = clock.getAsLong();
+        for (int i = 0; i < length; i++) {
+            int slot = slots[i];
+            lastUpdates[slot] = now;
+            apply(slot, rssi[i]);
+        }
+    }
+
+    /**
+     * Returns current estimated reading of a slot.
+     * @param slot device slot
+     * @return current estimated reading or 0 if the slot has not received any readings yet
+     */
+    public double current(int slot) {
+        double estimate = estimates[slot];
+        return estimate == estimate ? estimate : 0;
+    }
+
+    /**
+     * Sets noise factors of a slot.
+     * @param slot device slot
+     * @param processNoise process noise factor
+     * @param measurementNoise measurement noise factor
+     */
+    public void setNoise(int slot, double processNoise, double measurementNoise) {
+        processNoises[slot] = processNoise;
+        measurementNoises[slot] = measurementNoise;
+    }
+
+    /**
+     * Returns the packed address of the device a slot is allocated for.
+     * @param slot device slot
+     * @return packed device address or -1 if the slot is free
+     */
+    public long getAddress(int slot) {
+        return addresses[slot];
+    }
+
+    /**
+     * Returns the number of allocated slots.
+     * @return number of allocated slots
+     */
+    public int size() {
+        return size;
+    }
+
+    private double apply(int slot, short rssi) {
+        double estimate = estimates[slot];
+        // NaN marks a slot that has not received any readings yet
+        boolean initialized = estimate == estimate;
+        double interimRssi = initialized ? estimate : rssi;
+        double interimCovariance = initialized ? covariances[slot] + processNoises[slot] : 1;
+        double kalmanGain = interimCovariance / (interimCovariance + measurementNoises[slot]);
+        estimate = interimRssi + kalmanGain * (rssi - interimRssi);
+        estimates[slot] = estimate;
+        covariances[slot] = (1 - kalmanGain) * interimCovariance;
+        return estimate;
+    }
+
+    private void allocateSlots(int capacity) {
+        final int current = addresses != null ? addresses.length : 0;
+        estimates = grow(estimates, capacity);
+        covariances = grow(covariances, capacity);
+        processNoises = grow(processNoises, capacity);
+        measurementNoises = grow(measurementNoises, capacity);
+        lastUpdates = lastUpdates != null ? Arrays.copyOf(lastUpdates, capacity) : new long[capacity];
+        addresses = addresses != null ? Arrays.copyOf(addresses, capacity) : new long[capacity];
+        Arrays.fill(addresses, current, capacity, FREE);
+        freeSlots = freeSlots != null ? Arrays.copyOf(freeSlots, capacity) : new int[capacity];
+    }
+
+    private static double[] grow(double[] array, int capacity) {
+        return array != null ? Arrays.copyOf(array, capacity) : new double[capacity];
+    }
+
+    private void allocateIndex(int capacity) {
+        indexKeys = new long[capacity];
+        indexSlots = new int[capacity];
+        Arrays.fill(indexKeys, FREE);
+        for (int slot = 0; slot < highWaterMark; slot++) {
+            if (addresses[slot] != FREE) {
+                indexPut(addresses[slot], slot);
+            }
+        }
+    }
+
+    private void indexPut(long address, int slot) {
+        int mask = indexKeys.length - 1;
+        int cell = hash(address) & mask;
+        while (indexKeys[cell] != FREE) {
+            cell = (cell + 1) & mask;
+        }
+        indexKeys[cell] = address;
+        indexSlots[cell] = slot;
+    }
+
+    private void indexRemove(long address) {
+        int mask = indexKeys.length - 1;
+        int cell = hash(address) & mask;
+        while (indexKeys[cell] != address) {
+            cell = (cell + 1) & mask;
+        }
+        // backward shift deletion, keeps probe sequences unbroken without tombstones
+        int next = (cell + 1) & mask;
+        while (indexKeys[next] != FREE) {
+            int home = hash(indexKeys[next]) & mask;
+            if ((next - home & mask) >= (next - cell & mask)) {
+                indexKeys[cell] = indexKeys[next];
+                indexSlots[cell] = indexSlots[next];
+                cell = next;
+            }
+            next = (next + 1) & mask;
+        }
+        indexKeys[cell] = FREE;
+    }
+
+    private static int hash(long address) {
+        long hash = address * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ hash >>> 32);
+    }
+
+}
@@ -2,14 +2,17 @@ package org.sputnikdev.bluetooth;
 
 /**
  * A simple implementation of the Kalman filter to smooth RSSI readings.
+ * The filter implements primitive {@link ShortFilter} and {@link DoubleFilter} interfaces,
+ * the generic {@link Filter} interface is implemented on top of them.
  */
-public class RssiKalmanFilter implements Filter<Short> {
+public class RssiKalmanFilter implements Filter<Short>, ShortFilter, DoubleFilter, StatefulFilter {
 
     private static final double RSSI_PROCESS_NOISE = 0.125;
     private static final double RSSI_MEASUREMENT_NOISE = 30;
 
     private double processNoise;
     private double measurementNoise;
+    private boolean initialized;
     private double currentRssi;
     private double errorCovariance;
 
@@ -35,9 +38,20 @@ public class RssiKalmanFilter implements Filter<Short> {
 
     @Override
     public Short next(Short next) {
+        return next(next.shortValue());
+    }
+
+    @Override
+    public short next(short next) {
+        return (short) next((double) next);
+    }
+
+    @Override
+    public double next(double next) {
         double interimRssi;
         double interimCovariance;
-        if (currentRssi == 0) {
+        if (!initialized) {
+            initialized = true;
             interimRssi = next;
             interimCovariance = 1;
         } else {
@@ -47,14 +61,71 @@ public class RssiKalmanFilter implements Filter<Short> {
         double kalmanGain = interimCovariance / (interimCovariance + measurementNoise);
         currentRssi = interimRssi + kalmanGain * (next - interimRssi);
         errorCovariance = (1 - kalmanGain) * interimCovariance;
-        return (short) currentRssi;
+        return currentRssi;
     }
 
     @Override
     public Short current() {
+        return currentAsShort();
+    }
+
+    @Override
+    public short currentAsShort() {
         return (short) currentRssi;
     }
 
+    @Override
+    public double currentAsDouble() {
+        return currentRssi;
+    }
+
+    @Override
+    public void reset() {
+        initialized = false;
+        currentRssi = 0;
+        errorCovariance = 0;
+    }
+
+    /**
+     * Takes a snapshot of the state of the filter.
+     * @return snapshot of the state
+     */
+    public KalmanFilterState snapshot() {
+        return snapshot(new KalmanFilterState());
+    }
+
+    @Override
+    public KalmanFilterState snapshot(KalmanFilterState state) {
+        state.setInitialized(initialized);
+        state.setRssi(currentRssi);
+        state.setErrorCovariance(errorCovariance);
+        state.setProcessNoise(processNoise);
+        state.setMeasurementNoise(measurementNoise);
+        state.setTimestamp(0);
+        return state;
+    }
+
+    @Override
+    public void restore(KalmanFilterState state) {
+        initialized = state.isInitialized();
+        currentRssi = state.getRssi();
+        errorCovariance = state.getErrorCovariance();
+        processNoise = state.getProcessNoise();
+        measurementNoise = state.getMeasurementNoise();
+    }
+
+    /**
+     * Copies the state of another filter (including noise factors) into this filter.
+     * @param other filter to copy the state from
+     */
+    public void copyFrom(RssiKalmanFilter other) {
+        initialized = other.initialized;
+        currentRssi = other.currentRssi;
+        errorCovariance = other.errorCovariance;
+        processNoise = other.processNoise;
+        measurementNoise = other.measurementNoise;
+    }
+
     /**
      * Returns the process noise factor.
      * @return process noise factor
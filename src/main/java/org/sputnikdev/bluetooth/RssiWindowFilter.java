@@ -0,0 +1,498 @@
+package org.sputnikdev.bluetooth;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * A sliding window filter to smooth RSSI readings and to calculate some rolling statistics of them
+ * (mean, variance, min/max, median and percentiles). The window is bounded by the number of readings and,
+ * optionally, by the age of readings. The filter estimates readings by one of the {@link Statistic statistics}
+ * of the window.
+ *
+ * <p>Readings are stored in a primitive ring buffer, all the statistics are maintained incrementally,
+ * so that no objects are allocated when readings are added:
+ * <ul>
+ *     <li>mean and variance - exact sums of readings and their squares, O(1) per reading</li>
+ *     <li>min and max - monotonic queues of ring slots, amortised O(1) per reading</li>
+ *     <li>median - two indexed heaps (a max-heap of the lower half and a min-heap of the upper half),
+ *     O(log n) per reading</li>
+ *     <li>percentiles - a histogram of readings in the RSSI range (-128 to 127), O(1) per reading,
+ *     see {@link #getPercentile(double)}</li>
+ * </ul>
+ * Fractional estimates are truncated towards zero by {@link #currentAsShort()}, the same way as other filters do,
+ * see {@link #currentAsDouble()} for the exact value.
+ *
+ * <p>Readings are evicted from time bounded windows when a new reading is added or {@link #evictExpired()}
+ * is called. The filter is not thread safe.
+ */
+public class RssiWindowFilter implements Filter<Short>, ShortFilter {
+
+    /**
+     * A statistic of the window that is used as the estimated value.
+     */
+    public enum Statistic {
+        MEAN,
+        MEDIAN,
+        MIN,
+        MAX
+    }
+
+    private final Statistic statistic;
+    private final long maxAgeNanos;
+    private final LongSupplier clock;
+    private final short[] values;
+    // null for windows that are bounded only by the number of readings
+    private final long[] timestamps;
+    private final MonotonicDeque minimums;
+    private final MonotonicDeque maximums;
+    private final SlotHeap lower;
+    private final SlotHeap upper;
+    // number of readings of each value in the RSSI range, readings out of the range are only counted
+    private final int[] histogram = new int[Byte.MAX_VALUE - Byte.MIN_VALUE + 1];
+    private int outOfRange;
+    private short[] sorted;
+    private int head;
+    private int count;
+    private long sum;
+    private long sumOfSquares;
+    private double current;
+
+    /**
+     * Creates a filter that is bounded by the number of readings and estimates readings by their mean value.
+     * @param size maximum number of readings in the window
+     */
+    public RssiWindowFilter(int size) {
+        this(size, Statistic.MEAN);
+    }
+
+    /**
+     * Creates a filter that is bounded by the number of readings.
+     * @param size maximum number of readings in the window
+     * @param statistic statistic that is used as the estimated value
+     */
+    public RssiWindowFilter(int size, Statistic statistic) {
+        this(size, 0, statistic, null);
+    }
+
+    /**
+     * Creates a filter that is bounded by both the number of readings and the age of readings.
+     * @param size maximum number of readings in the window
+     * @param maxAge maximum age of readings in the window
+     * @param unit time unit of the maximum age
+     * @param statistic statistic that is used as the estimated value
+     */
+    public RssiWindowFilter(int size, long maxAge, TimeUnit unit, Statistic statistic) {
+        this(size, unit.toNanos(maxAge), statistic, System::nanoTime);
+        if (maxAge <= 0) {
+            throw new IllegalArgumentException("Maximum age must be positive: " + maxAge);
+        }
+    }
+
+    RssiWindowFilter(int size, long maxAgeNanos, Statistic statistic, LongSupplier clock) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Window size must be positive: " + size);
+        }
+        if (statistic == null) {
+            throw new IllegalArgumentException("Statistic must be specified");
+        }
+        this.statistic = statistic;
+        this.maxAgeNanos = maxAgeNanos;
+        this.clock = clock;
+        values = new short[size];
+        timestamps = clock != null ? new long[size] : null;
+        minimums = new MonotonicDeque(values, false);
+        maximums = new MonotonicDeque(values, true);
+        lower = new SlotHeap(values, true);
+        upper = new SlotHeap(values, false);
+    }
+
+    @Override
+    public Short next(Short next) {
+        return next(next.shortValue());
+    }
+
+    @Override
+    public short next(short next) {
+        long now = 0;
+        if (timestamps != null) {
+            now = clock.getAsLong();
+            trim(now);
+        }
+        if (count == values.length) {
+            evictOldest();
+        }
+        int slot = slot(count++);
+        values[slot] = next;
+        if (timestamps != null) {
+            timestamps[slot] = now;
+        }
+        sum += next;
+        sumOfSquares += next * next;
+        if (next >= Byte.MIN_VALUE && next <= Byte.MAX_VALUE) {
+            histogram[next - Byte.MIN_VALUE]++;
+        } else {
+            outOfRange++;
+        }
+        minimums.add(slot);
+        maximums.add(slot);
+        if (lower.size == 0 || next <= lower.top()) {
+            lower.add(slot);
+        } else {
+            upper.add(slot);
+        }
+        rebalance();
+        current = estimate();
+        return currentAsShort();
+    }
+
+    @Override
+    public Short current() {
+        return currentAsShort();
+    }
+
+    @Override
+    public short currentAsShort() {
+        return (short) current;
+    }
+
+    /**
+     * Returns current estimated reading (calculated on the previous step) without rounding.
+     * @return current estimated reading or 0 if the window is empty
+     */
+    public double currentAsDouble() {
+        return current;
+    }
+
+    /**
+     * Resets the filter to its initial state (an empty window).
+     */
+    public void reset() {
+        while (count > 0) {
+            evictOldest();
+        }
+        head = 0;
+        current = 0;
+    }
+
+    /**
+     * Evicts readings that are older than the maximum age from the window.
+     * Windows that are bounded only by the number of readings are not affected.
+     * @return number of evicted readings
+     */
+    public int evictExpired() {
+        if (timestamps == null) {
+            return 0;
+        }
+        int evicted = trim(clock.getAsLong());
+        if (evicted > 0) {
+            current = estimate();
+        }
+        return evicted;
+    }
+
+    /**
+     * Returns the number of readings in the window.
+     * @return number of readings in the window
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the statistic that is used as the estimated value.
+     * @return statistic that is used as the estimated value
+     */
+    public Statistic getStatistic() {
+        return statistic;
+    }
+
+    /**
+     * Returns the mean value of the readings in the window.
+     * @return mean value or 0 if the window is empty
+     */
+    public double getMean() {
+        return count > 0 ? (double) sum / count : 0;
+    }
+
+    /**
+     * Returns the (population) variance of the readings in the window.
+     * @return variance or 0 if the window is empty
+     */
+    public double getVariance() {
+        // sums are exact, so that the variance does not drift as readings come and go
+        return count > 0 ? (double) (count * sumOfSquares - sum * sum) / ((long) count * count) : 0;
+    }
+
+    /**
+     * Returns the (population) standard deviation of the readings in the window.
+     * @return standard deviation or 0 if the window is empty
+     */
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * Returns the minimum reading in the window.
+     * @return minimum reading or 0 if the window is empty
+     */
+    public short getMin() {
+        return count > 0 ? minimums.peek() : 0;
+    }
+
+    /**
+     * Returns the maximum reading in the window.
+     * @return maximum reading or 0 if the window is empty
+     */
+    public short getMax() {
+        return count > 0 ? maximums.peek() : 0;
+    }
+
+    /**
+     * Returns the median of the readings in the window, the mean of the two middle readings is returned
+     * if the number of readings is even.
+     * @return median or 0 if the window is empty
+     */
+    public double getMedian() {
+        if (count == 0) {
+            return 0;
+        }
+        return lower.size > upper.size ? lower.top() : (lower.top() + upper.top()) / 2.0;
+    }
+
+    /**
+     * Returns a percentile of the readings in the window, values between the closest ranks are linearly
+     * interpolated (so that the 50th percentile equals to the median). Percentiles are read from the histogram
+     * of readings, which takes at most 256 steps regardless of the window size. Readings out of the RSSI range
+     * (-128 to 127) are not in the histogram, the window is sorted (in O(n log n) time) while there are any.
+     * @param percentile percentile (from 0 to 100 inclusive)
+     * @return percentile of the readings or 0 if the window is empty
+     */
+    public double getPercentile(double percentile) {
+        if (!(percentile >= 0 && percentile <= 100)) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+        }
+        if (count == 0) {
+            return 0;
+        }
+        double rank = percentile / 100 * (count - 1);
+        int index = (int) rank;
+        if (outOfRange > 0) {
+            return sortedPercentile(rank, index);
+        }
+        int bucket = 0;
+        int seen = histogram[0];
+        while (seen <= index) {
+            seen += histogram[++bucket];
+        }
+        int value = bucket + Byte.MIN_VALUE;
+        if (index + 1 == count || rank == index || seen > index + 1) {
+            return value;
+        }
+        do {
+            bucket++;
+        } while (histogram[bucket] == 0);
+        return value + (rank - index) * (bucket + Byte.MIN_VALUE - value);
+    }
+
+    private double sortedPercentile(double rank, int index) {
+        if (sorted == null) {
+            sorted = new short[values.length];
+        }
+        int tail = Math.min(count, values.length - head);
+        System.arraycopy(values, head, sorted, 0, tail);
+        System.arraycopy(values, 0, sorted, tail, count - tail);
+        Arrays.sort(sorted, 0, count);
+        return index + 1 < count ? sorted[index] + (rank - index) * (sorted[index + 1] - sorted[index])
+                : sorted[index];
+    }
+
+    private int trim(long now) {
+        int evicted = 0;
+        while (count > 0 && now - timestamps[head] >= maxAgeNanos) {
+            evictOldest();
+            evicted++;
+        }
+        return evicted;
+    }
+
+    private void evictOldest() {
+        int slot = head;
+        short value = values[slot];
+        sum -= value;
+        sumOfSquares -= value * value;
+        if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            histogram[value - Byte.MIN_VALUE]--;
+        } else {
+            outOfRange--;
+        }
+        minimums.remove(slot);
+        maximums.remove(slot);
+        if (!lower.remove(slot)) {
+            upper.remove(slot);
+        }
+        rebalance();
+        head = slot(1);
+        count--;
+    }
+
+    private void rebalance() {
+        // the lower half keeps the same number of readings as the upper half or one more
+        if (lower.size > upper.size + 1) {
+            upper.add(lower.poll());
+        } else if (upper.size > lower.size) {
+            lower.add(upper.poll());
+        }
+    }
+
+    private double estimate() {
+        switch (statistic) {
+            case MEDIAN: return getMedian();
+            case MIN: return getMin();
+            case MAX: return getMax();
+            default: return getMean();
+        }
+    }
+
+    private int slot(int offset) {
+        int slot = head + offset;
+        return slot < values.length ? slot : slot - values.length;
+    }
+
+    /**
+     * A queue of ring slots in the order of insertion, whose values are monotonic (non-decreasing for minimums,
+     * non-increasing for maximums), so that the head of the queue is always the minimum/maximum of the window.
+     */
+    private static final class MonotonicDeque {
+
+        private final short[] values;
+        private final int[] slots;
+        private final int sign;
+        private int head;
+        private int size;
+
+        private MonotonicDeque(short[] values, boolean max) {
+            this.values = values;
+            this.slots = new int[values.length];
+            this.sign = max ? -1 : 1;
+        }
+
+        private void add(int slot) {
+            int value = sign * values[slot];
+            while (size > 0 && sign * values[slots[index(size - 1)]] >= value) {
+                size--;
+            }
+            slots[index(size++)] = slot;
+        }
+
+        private void remove(int slot) {
+            // slots are evicted in the order of insertion, so only the head can be the evicted one
+            if (size > 0 && slots[head] == slot) {
+                head = index(1);
+                size--;
+            }
+        }
+
+        private short peek() {
+            return values[slots[head]];
+        }
+
+        private int index(int offset) {
+            int index = head + offset;
+            return index < slots.length ? index : index - slots.length;
+        }
+    }
+
+    /**
+     * A binary heap of ring slots ordered by their values. Positions of slots in the heap are indexed,
+     * so that any slot can be removed in O(log n) time.
+     */
+    private static final class SlotHeap {
+
+        private final short[] values;
+        private final int[] slots;
+        // position of a slot in the heap or -1 if the slot is not in the heap
+        private final int[] positions;
+        private final int sign;
+        private int size;
+
+        private SlotHeap(short[] values, boolean max) {
+            this.values = values;
+            this.slots = new int[values.length];
+            this.positions = new int[values.length];
+            this.sign = max ? -1 : 1;
+            Arrays.fill(positions, -1);
+        }
+
+        private short top() {
+            return values[slots[0]];
+        }
+
+        private void add(int slot) {
+            slots[size] = slot;
+            positions[slot] = size;
+            siftUp(size++);
+        }
+
+        private int poll() {
+            int slot = slots[0];
+            remove(slot);
+            return slot;
+        }
+
+        private boolean remove(int slot) {
+            int position = positions[slot];
+            if (position < 0) {
+                return false;
+            }
+            positions[slot] = -1;
+            int last = slots[--size];
+            if (position < size) {
+                slots[position] = last;
+                positions[last] = position;
+                siftDown(position);
+                siftUp(positions[last]);
+            }
+            return true;
+        }
+
+        private void siftUp(int position) {
+            while (position > 0) {
+                int parent = (position - 1) >>> 1;
+                if (!above(slots[position], slots[parent])) {
+                    break;
+                }
+                swap(position, parent);
+                position = parent;
+            }
+        }
+
+        private void siftDown(int position) {
+            int child = (position << 1) + 1;
+            while (child < size) {
+                if (child + 1 < size && above(slots[child + 1], slots[child])) {
+                    child++;
+                }
+                if (!above(slots[child], slots[position])) {
+                    break;
+                }
+                swap(position, child);
+                position = child;
+                child = (position << 1) + 1;
+            }
+        }
+
+        private boolean above(int slot, int other) {
+            return sign * values[slot] < sign * values[other];
+        }
+
+        private void swap(int position, int other) {
+            int slot = slots[position];
+            slots[position] = slots[other];
+            slots[other] = slot;
+            positions[slots[position]] = position;
+            positions[slot] = other;
+        }
+    }
+
+}
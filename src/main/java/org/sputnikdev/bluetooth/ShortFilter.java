@@ -0,0 +1,23 @@
+package org.sputnikdev.bluetooth;
+
+/**
+ * A primitive specialisation of the {@link Filter} interface for short readings (e.g. RSSI),
+ * readings and estimated values are not boxed.
+ */
+public interface ShortFilter {
+
+    /**
+     * Returns current estimated reading (calculated on the previous step). Fractional estimates are truncated
+     * towards zero, i.e. the same as casting them to short.
+     * @return current estimated reading
+     */
+    short currentAsShort();
+
+    /**
+     * Applies the filter to the given reading.
+     * @param reading next reading
+     * @return processed/estimated value
+     */
+    short next(short reading);
+
+}
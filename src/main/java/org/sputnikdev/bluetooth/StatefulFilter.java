@@ -0,0 +1,27 @@
+package org.sputnikdev.bluetooth;
+
+/**
+ * A Kalman filter whose state can be reset, saved into and restored from a {@link KalmanFilterState},
+ * e.g. to recycle pooled filter instances or to checkpoint filters (see {@link KalmanFilterCheckpoint}).
+ */
+public interface StatefulFilter {
+
+    /**
+     * Resets the filter to its initial state (as if it has not received any readings).
+     */
+    void reset();
+
+    /**
+     * Takes a snapshot of the state of the filter into an existing snapshot.
+     * @param state snapshot to fill
+     * @return the given snapshot
+     */
+    KalmanFilterState snapshot(KalmanFilterState state);
+
+    /**
+     * Restores the state of the filter from a snapshot.
+     * @param state snapshot of the state
+     */
+    void restore(KalmanFilterState state);
+
+}
@@ -0,0 +1,254 @@
+package org.sputnikdev.bluetooth;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * A variant of the {@link RssiKalmanFilter} that takes into account irregular intervals between readings.
+ * Unlike the {@link RssiKalmanFilter}, which treats every reading as one time step, the process noise factor
+ * of this filter is a rate (per second) that is scaled by the time elapsed since the previous reading.
+ * Therefore a burst of readings does not make the estimate jump, whereas the filter quickly catches up
+ * after a gap. The filter starts from scratch if the gap is longer than the configured maximum.
+ * A reading that is older than the previous one does not add any process noise. Readings that come late
+ * by less than a tenth of the maximum gap (packets reordered on their way) do not move the time of the filter,
+ * whereas after a longer step back the filter carries on from the timestamp of the reading, so that a clock
+ * that steps back does not freeze the filter. A step back that is longer than the maximum gap is treated as a gap.
+ *
+ * <p>Readings are timestamped by {@link System#nanoTime()} unless timestamps are provided explicitly
+ * (see {@link #next(long, short)}), e.g. when readings are replayed or come from an adapter with its own clock.
+ */
+public class TimedRssiKalmanFilter implements Filter<Short>, ShortFilter, DoubleFilter, StatefulFilter {
+
+    // the same as the default process noise of the RssiKalmanFilter for readings that come every 100ms
+    private static final double RSSI_PROCESS_NOISE = 1.25;
+    private static final double RSSI_MEASUREMENT_NOISE = 30;
+    private static final long DEFAULT_MAX_GAP = TimeUnit.SECONDS.toNanos(10);
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    // readings that are late by up to a tenth of the maximum gap are treated as reordered rather than a clock step
+    private static final long REORDER_TOLERANCE_DIVISOR = 10;
+
+    private final LongSupplier clock;
+    private double processNoise;
+    private double measurementNoise;
+    private long maxGapNanos;
+    private boolean initialized;
+    private long lastTimestamp;
+    private double currentRssi;
+    private double errorCovariance;
+
+    /**
+     * Creates an instance of the filter with some default settings:
+     * <br>Process noise: 1.25 per second
+     * <br>Measurement noise: 30
+     * <br>Maximum gap: 10 seconds.
+     */
+    public TimedRssiKalmanFilter() {
+        this(RSSI_PROCESS_NOISE, RSSI_MEASUREMENT_NOISE, DEFAULT_MAX_GAP, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Creates an instance of the filter with some provided settings.
+     * @param processNoise process noise factor per second
+     * @param measurementNoise measurement noise factor
+     * @param maxGap maximum gap between readings, the filter starts from scratch after longer gaps
+     * @param unit time unit of the maximum gap
+     */
+    public TimedRssiKalmanFilter(double processNoise, double measurementNoise, long maxGap, TimeUnit unit) {
+        this(processNoise, measurementNoise, maxGap, unit, System::nanoTime);
+    }
+
+    TimedRssiKalmanFilter(double processNoise, double measurementNoise, long maxGap, TimeUnit unit,
+                          LongSupplier clock) {
+        this.processNoise = processNoise;
+        this.measurementNoise = measurementNoise;
+        this.maxGapNanos = unit.toNanos(maxGap);
+        this.clock = clock;
+    }
+
+    @Override
+    public Short next(Short next) {
+        return next(next.shortValue());
+    }
+
+    @Override
+    public short next(short next) {
+        return (short) next(clock.getAsLong(), (double) next);
+    }
+
+    @Override
+    public double next(double next) {
+        return next(clock.getAsLong(), next);
+    }
+
+    /**
+     * Applies the filter to the given reading.
+     * @param nanos timestamp of the reading in nanoseconds (of the same origin as the timestamps of the previous
+     *              readings, e.g. {@link System#nanoTime()})
+     * @param rssi next reading
+     * @return estimated value
+     */
+    public short next(long nanos, short rssi) {
+        return (short) next(nanos, (double) rssi);
+    }
+
+    /**
+     * Applies the filter to the given reading.
+     * @param nanos timestamp of the reading in nanoseconds (of the same origin as the timestamps of the previous
+     *              readings, e.g. {@link System#nanoTime()})
+     * @param rssi next reading
+     * @return estimated value
+     */
+    public double next(long nanos, double rssi) {
+        long elapsed = nanos - lastTimestamp;
+        double interimRssi;
+        double interimCovariance;
+        if (!initialized || elapsed >= maxGapNanos || elapsed <= -maxGapNanos) {
+            initialized = true;
+            lastTimestamp = nanos;
+            interimRssi = rssi;
+            interimCovariance = 1;
+        } else if (elapsed > 0) {
+            lastTimestamp = nanos;
+            interimRssi = currentRssi;
+            interimCovariance = errorCovariance + processNoise * elapsed / NANOS_PER_SECOND;
+        } else {
+            // readings that come out of order do not move the estimate back in time; a late packet leaves the time
+            // as is, so that the next reading does not count the same interval twice, whereas the next readings
+            // after a clock step back are timed from it, otherwise they would not add process noise for a while
+            if (elapsed < -maxGapNanos / REORDER_TOLERANCE_DIVISOR) {
+                lastTimestamp = nanos;
+            }
+            interimRssi = currentRssi;
+            interimCovariance = errorCovariance;
+        }
+        double kalmanGain = interimCovariance / (interimCovariance + measurementNoise);
+        currentRssi = interimRssi + kalmanGain * (rssi - interimRssi);
+        errorCovariance = (1 - kalmanGain) * interimCovariance;
+        return currentRssi;
+    }
+
+    @Override
+    public Short current() {
+        return currentAsShort();
+    }
+
+    @Override
+    public short currentAsShort() {
+        return (short) currentRssi;
+    }
+
+    @Override
+    public double currentAsDouble() {
+        return currentRssi;
+    }
+
+    @Override
+    public void reset() {
+        initialized = false;
+        lastTimestamp = 0;
+        currentRssi = 0;
+        errorCovariance = 0;
+    }
+
+    /**
+     * Takes a snapshot of the state of the filter.
+     * @return snapshot of the state
+     */
+    public KalmanFilterState snapshot() {
+        return snapshot(new KalmanFilterState());
+    }
+
+    @Override
+    public KalmanFilterState snapshot(KalmanFilterState state) {
+        state.setInitialized(initialized);
+        state.setRssi(currentRssi);
+        state.setErrorCovariance(errorCovariance);
+        state.setProcessNoise(processNoise);
+        state.setMeasurementNoise(measurementNoise);
+        state.setTimestamp(lastTimestamp);
+        return state;
+    }
+
+    @Override
+    public void restore(KalmanFilterState state) {
+        initialized = state.isInitialized();
+        currentRssi = state.getRssi();
+        errorCovariance = state.getErrorCovariance();
+        processNoise = state.getProcessNoise();
+        measurementNoise = state.getMeasurementNoise();
+        lastTimestamp = state.getTimestamp();
+    }
+
+    /**
+     * Copies the state of another filter (including noise factors and the maximum gap) into this filter.
+     * @param other filter to copy the state from
+     */
+    public void copyFrom(TimedRssiKalmanFilter other) {
+        initialized = other.initialized;
+        currentRssi = other.currentRssi;
+        errorCovariance = other.errorCovariance;
+        processNoise = other.processNoise;
+        measurementNoise = other.measurementNoise;
+        maxGapNanos = other.maxGapNanos;
+        lastTimestamp = other.lastTimestamp;
+    }
+
+    /**
+     * Returns the timestamp of the latest reading.
+     * @return timestamp of the latest reading in nanoseconds
+     */
+    public long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    /**
+     * Returns the process noise factor.
+     * @return process noise factor per second
+     */
+    public double getProcessNoise() {
+        return processNoise;
+    }
+
+    /**
+     * Sets the process noise factor.
+     * @param processNoise process noise factor per second
+     */
+    public void setProcessNoise(double processNoise) {
+        this.processNoise = processNoise;
+    }
+
+    /**
+     * Returns the measurement noise factor.
+     * @return measurement noise factor
+     */
+    public double getMeasurementNoise() {
+        return measurementNoise;
+    }
+
+    /**
+     * Sets the measurement noise factor.
+     * @param measurementNoise measurement noise factor
+     */
+    public void setMeasurementNoise(double measurementNoise) {
+        this.measurementNoise = measurementNoise;
+    }
+
+    /**
+     * Returns the maximum gap between readings.
+     * @param unit time unit of the result
+     * @return maximum gap between readings
+     */
+    public long getMaxGap(TimeUnit unit) {
+        return unit.convert(maxGapNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Sets the maximum gap between readings, the filter starts from scratch after longer gaps.
+     * @param maxGap maximum gap between readings
+     * @param unit time unit of the maximum gap
+     */
+    public void setMaxGap(long maxGap, TimeUnit unit) {
+        this.maxGapNanos = unit.toNanos(maxGap);
+    }
+
+}
@@ -20,13 +20,10 @@ package org.sputnikdev.bluetooth;
  * #L%
  */
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.Map;
-import java.util.Optional;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
@@ -51,22 +48,40 @@ import java.util.stream.Collectors;
  */
 public class URL implements Comparable<URL> {
 
-    private static final Pattern URL_PATTERN =
-            Pattern.compile("^((?<protocol>\\w*):)?/(?<adapter>(\\w\\w:){5}\\w\\w)?"
-                    + "(/(?<device>(\\w\\w:){5}\\w\\w)?(\\[name=(?<devicename>[\\w\\s'-]+)\\])?)?"
-                    + "(/(?<service>[0-9A-Fa-f]{4,8}(-[0-9A-Fa-f]{4}-[0-9A-Fa-f]{4}-[0-9A-Fa-f]{4}-[0-9A-Fa-f]{12})?))?"
-                    + "(/(?<charact>[0-9A-Fa-f]{4,8}(-[0-9A-Fa-f]{4}-[0-9A-Fa-f]{4}-[0-9A-Fa-f]{4}-[0-9A-Fa-f]{12})?))?"
-                    + "(/(?<field>\\w+))?$");
+    // declared before ROOT, so that it is initialised before any URL is created
+    private static final String[] NO_KEYS = new String[0];
 
     public static final URL ROOT = new URL("/");
 
+    private static final int FULL_UUID_LENGTH = 36;
+
     private final String protocol;
     private final String adapterAddress;
     private final String deviceAddress;
     private final Map<String, String> deviceAttributes = new HashMap<>();
+    // attribute names in their natural order, so that URLs are compared without sorting their attributes
+    private final String[] attributeKeys;
     private final String serviceUUID;
     private final String characteristicUUID;
     private final String fieldName;
+    // field names are case insensitive, the normalized name is used for comparisons
+    private final String fieldKey;
+    // canonical URLs compare bits of their parsed UUIDs rather than strings, the bits are copied into the URL itself,
+    // so that comparisons do not dereference the parsed UUIDs; they are final (zero unless the matching has*Bits
+    // flag is set) and comparisons never look at the lazily cached UUID values below
+    private final boolean canonical;
+    private final boolean hasServiceBits;
+    private final boolean hasCharacteristicBits;
+    private final long serviceMsb;
+    private final long serviceLsb;
+    private final long characteristicMsb;
+    private final long characteristicLsb;
+    private BluetoothUUID serviceUUIDValue;
+    private BluetoothUUID characteristicUUIDValue;
+    // both are cached on first use, the same way as java.lang.String caches its hash code
+    private int hash;
+    private String string;
+    private URLSortKey sortKey;
 
     /**
      * Constructor to build a URL object from its text representation.
@@ -101,22 +116,29 @@ public class URL implements Comparable<URL> {
      * @param url text representation of a URL
      */
     public URL(String url) {
-        Matcher matcher = URL_PATTERN.matcher(url);
-        if (matcher.find()) {
-            protocol = toLowerCase(matcher.group("protocol"));
-            adapterAddress = toUpperCase(matcher.group("adapter"));
-            deviceAddress = toUpperCase(matcher.group("device"));
-            String deviceName = matcher.group("devicename");
-            if (deviceName != null) {
-                deviceAttributes.put("name", deviceName);
-            }
-            serviceUUID = toLowerCase(matcher.group("service"));
-            characteristicUUID = toLowerCase(matcher.group("charact"));
-            fieldName = matcher.group("field");
-            validate();
-        } else {
-            throw new IllegalArgumentException("Invalid URL: " + url);
+        this(new URLParser(url));
+    }
+
+    private URL(URLParser parser) {
+        protocol = parser.protocol;
+        adapterAddress = parser.adapterAddress;
+        deviceAddress = parser.deviceAddress;
+        if (parser.deviceName != null) {
+            deviceAttributes.put("name", parser.deviceName);
         }
+        serviceUUID = parser.serviceUUID;
+        characteristicUUID = parser.characteristicUUID;
+        fieldName = parser.fieldName;
+        fieldKey = toLowerCase(fieldName);
+        canonical = false;
+        hasServiceBits = false;
+        hasCharacteristicBits = false;
+        serviceMsb = 0;
+        serviceLsb = 0;
+        characteristicMsb = 0;
+        characteristicLsb = 0;
+        attributeKeys = sortedKeys(deviceAttributes);
+        validate();
     }
 
     /**
@@ -187,6 +209,15 @@ public class URL implements Comparable<URL> {
         this.serviceUUID = toLowerCase(serviceUUID);
         this.characteristicUUID = toLowerCase(characteristicUUID);
         this.fieldName = fieldName;
+        this.fieldKey = toLowerCase(fieldName);
+        this.canonical = false;
+        this.hasServiceBits = false;
+        this.hasCharacteristicBits = false;
+        this.serviceMsb = 0;
+        this.serviceLsb = 0;
+        this.characteristicMsb = 0;
+        this.characteristicLsb = 0;
+        this.attributeKeys = sortedKeys(this.deviceAttributes);
         validate();
     }
 
@@ -210,6 +241,15 @@ public class URL implements Comparable<URL> {
         this.serviceUUID = toLowerCase(serviceUUID);
         this.characteristicUUID = toLowerCase(characteristicUUID);
         this.fieldName = fieldName;
+        this.fieldKey = toLowerCase(fieldName);
+        this.canonical = false;
+        this.hasServiceBits = false;
+        this.hasCharacteristicBits = false;
+        this.serviceMsb = 0;
+        this.serviceLsb = 0;
+        this.characteristicMsb = 0;
+        this.characteristicLsb = 0;
+        this.attributeKeys = sortedKeys(this.deviceAttributes);
         validate();
     }
 
@@ -224,9 +264,40 @@ public class URL implements Comparable<URL> {
         this.serviceUUID = toLowerCase(serviceUUID);
         this.characteristicUUID = toLowerCase(characteristicUUID);
         this.fieldName = fieldName;
+        this.fieldKey = toLowerCase(fieldName);
+        this.canonical = false;
+        this.hasServiceBits = false;
+        this.hasCharacteristicBits = false;
+        this.serviceMsb = 0;
+        this.serviceLsb = 0;
+        this.characteristicMsb = 0;
+        this.characteristicLsb = 0;
+        this.attributeKeys = sortedKeys(this.deviceAttributes);
         validate();
     }
 
+    private URL(URL url, BluetoothUUID serviceUUIDValue, BluetoothUUID characteristicUUIDValue) {
+        this.protocol = url.protocol;
+        this.adapterAddress = url.adapterAddress;
+        this.deviceAddress = url.deviceAddress;
+        this.deviceAttributes.putAll(url.deviceAttributes);
+        this.serviceUUID = serviceUUIDValue != null ? toFullForm(url.serviceUUID, serviceUUIDValue) : url.serviceUUID;
+        this.characteristicUUID = characteristicUUIDValue != null
+                ? toFullForm(url.characteristicUUID, characteristicUUIDValue) : url.characteristicUUID;
+        this.fieldName = url.fieldName;
+        this.fieldKey = url.fieldKey;
+        this.canonical = true;
+        this.attributeKeys = url.attributeKeys;
+        this.serviceUUIDValue = serviceUUIDValue;
+        this.characteristicUUIDValue = characteristicUUIDValue;
+        this.hasServiceBits = serviceUUIDValue != null;
+        this.serviceMsb = hasServiceBits ? serviceUUIDValue.getMostSignificantBits() : 0;
+        this.serviceLsb = hasServiceBits ? serviceUUIDValue.getLeastSignificantBits() : 0;
+        this.hasCharacteristicBits = characteristicUUIDValue != null;
+        this.characteristicMsb = hasCharacteristicBits ? characteristicUUIDValue.getMostSignificantBits() : 0;
+        this.characteristicLsb = hasCharacteristicBits ? characteristicUUIDValue.getLeastSignificantBits() : 0;
+    }
+
     /**
      * Makes a copy of a given URL with some additional components.
      * @param protocol protocol name
@@ -342,6 +413,31 @@ public class URL implements Comparable<URL> {
         return new URL(this.protocol, this.adapterAddress, this.deviceAddress, this.deviceAttributes, null, null, null);
     }
 
+    /**
+     * Returns a copy of a given URL in the canonical form, i.e. service and characteristic UUIDs are in their full
+     * form, e.g. "0000180f-0000-1000-8000-00805f9b34fb" instead of "180f". Canonical URLs are equal regardless of
+     * the UUID forms they have been created with. Non-standard UUIDs are left as they are.
+     *
+     * <p>Canonical URLs hold their UUIDs parsed (see {@link BluetoothUUID}), so that equality and ordering of
+     * canonical URLs compare UUIDs as longs rather than as strings. A canonical URL is still equal to a URL
+     * created from the same full form UUIDs.
+     * @return a canonical copy of a given URL or the URL itself if it is already canonical or does not have UUIDs
+     */
+    public URL toCanonical() {
+        if (canonical || serviceUUID == null) {
+            return this;
+        }
+        return new URL(this, parseUUID(serviceUUID), parseUUID(characteristicUUID));
+    }
+
+    /**
+     * Checks whether the URL is in the canonical form, see {@link #toCanonical()}.
+     * @return true if the URL is canonical, false otherwise
+     */
+    public boolean isCanonical() {
+        return canonical;
+    }
+
     public Map<String, String> getDeviceAttributes() {
         return Collections.unmodifiableMap(deviceAttributes);
     }
@@ -441,6 +537,36 @@ public class URL implements Comparable<URL> {
         return characteristicUUID;
     }
 
+    /**
+     * Returns service UUID as a value object, short and full forms of the same UUID are equal.
+     * The UUID is parsed once, canonical URLs already hold it.
+     * @return service UUID or null if the URL does not have service UUID
+     * @throws IllegalArgumentException if the service UUID is not a valid UUID
+     */
+    public BluetoothUUID getServiceUUIDValue() {
+        BluetoothUUID result = serviceUUIDValue;
+        if (result == null && serviceUUID != null) {
+            result = BluetoothUUID.parse(serviceUUID);
+            serviceUUIDValue = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns characteristic UUID as a value object, short and full forms of the same UUID are equal.
+     * The UUID is parsed once, canonical URLs already hold it.
+     * @return characteristic UUID or null if the URL does not have characteristic UUID
+     * @throws IllegalArgumentException if the characteristic UUID is not a valid UUID
+     */
+    public BluetoothUUID getCharacteristicUUIDValue() {
+        BluetoothUUID result = characteristicUUIDValue;
+        if (result == null && characteristicUUID != null) {
+            result = BluetoothUUID.parse(characteristicUUID);
+            characteristicUUIDValue = result;
+        }
+        return result;
+    }
+
     /**
      * Returns field name.
      * @return field name
@@ -449,6 +575,10 @@ public class URL implements Comparable<URL> {
         return fieldName;
     }
 
+    String getFieldKey() {
+        return fieldKey;
+    }
+
     /**
      * Checks whether a given URL is the "root" URL object.
      * @return true if it is the "root" URL, false otherwise
@@ -573,23 +703,12 @@ public class URL implements Comparable<URL> {
 
     @Override
     public String toString() {
-        LinkedList<String> fields = new LinkedList<>();
-        String deviceAddress = getDeviceCompositeAddress();
-        if (adapterAddress == null && deviceAddress != null) {
-            fields.add("");
-        } else {
-            fields.add(adapterAddress);
-        }
-        fields.add(deviceAddress);
-        fields.add(serviceUUID);
-        fields.add(characteristicUUID);
-        fields.add(fieldName);
-
-        while (!fields.isEmpty() && fields.getLast() == null) {
-            fields.removeLast();
+        String result = string;
+        if (result == null) {
+            result = buildString();
+            string = result;
         }
-
-        return (protocol != null ? protocol + ":" : "") + "/" + String.join("/", fields);
+        return result;
     }
 
     @Override
@@ -615,34 +734,50 @@ public class URL implements Comparable<URL> {
         if (!deviceAttributes.equals(url.deviceAttributes)) {
             return false;
         }
-        if (serviceUUID != null ? !serviceUUID.equals(url.serviceUUID) : url.serviceUUID != null) {
+        if (hasServiceBits && url.hasServiceBits) {
+            if (serviceMsb != url.serviceMsb || serviceLsb != url.serviceLsb) {
+                return false;
+            }
+        } else if (serviceUUID != null ? !serviceUUID.equals(url.serviceUUID) : url.serviceUUID != null) {
             return false;
         }
-        if (characteristicUUID != null
+        if (hasCharacteristicBits && url.hasCharacteristicBits) {
+            if (characteristicMsb != url.characteristicMsb || characteristicLsb != url.characteristicLsb) {
+                return false;
+            }
+        } else if (characteristicUUID != null
                 ? !characteristicUUID.equals(url.characteristicUUID) :
                 url.characteristicUUID != null) {
             return false;
         }
-        return fieldName != null && url.fieldName != null
-                ? fieldName.toLowerCase().equals(url.fieldName.toLowerCase()) : fieldName == url.fieldName;
-
+        return fieldKey != null ? fieldKey.equals(url.fieldKey) : url.fieldKey == null;
     }
 
     @Override
     public int hashCode() {
-        int result = protocol != null ? protocol.hashCode() : 0;
-        result = 31 * result + (adapterAddress != null ? adapterAddress.hashCode() : 0);
-        result = 31 * result + (deviceAddress != null ? deviceAddress.hashCode() : 0);
-        result = 31 * result + deviceAttributes.hashCode();
-        result = 31 * result + (serviceUUID != null ? serviceUUID.hashCode() : 0);
-        result = 31 * result + (characteristicUUID != null ? characteristicUUID.hashCode() : 0);
-        result = 31 * result + (fieldName != null ? fieldName.toLowerCase().hashCode() : 0);
+        int result = hash;
+        if (result == 0) {
+            result = computeHashCode();
+            hash = result;
+        }
         return result;
     }
 
+    /**
+     * Compares URLs component by component: protocol, adapter address, device address, device attributes,
+     * service UUID, characteristic UUID and field name (case insensitive). Missing components go first.
+     * The ordering is consistent with {@link #equals(Object)}.
+     * @param that a URL to compare with
+     * @return a negative integer, zero, or a positive integer as this URL is less than, equal to,
+     *     or greater than the specified URL
+     */
     @Override
     public int compareTo(URL that) {
-        int result = compareFields(adapterAddress, that.adapterAddress);
+        int result = compareFields(protocol, that.protocol);
+        if (result != 0) {
+            return result;
+        }
+        result = compareFields(adapterAddress, that.adapterAddress);
         if (result != 0) {
             return result;
         }
@@ -650,16 +785,70 @@ public class URL implements Comparable<URL> {
         if (result != 0) {
             return result;
         }
-        //TODO add device attributes comparison
-        result = compareFields(serviceUUID, that.serviceUUID);
+        result = compareAttributes(that);
+        if (result != 0) {
+            return result;
+        }
+        // full forms are fixed width lower case hex, so that their string order is the same as the order of bits
+        result = hasServiceBits && that.hasServiceBits
+                ? compareBits(serviceMsb, serviceLsb, that.serviceMsb, that.serviceLsb)
+                : compareFields(serviceUUID, that.serviceUUID);
         if (result != 0) {
             return result;
         }
-        result = compareFields(characteristicUUID, that.characteristicUUID);
+        result = hasCharacteristicBits && that.hasCharacteristicBits
+                ? compareBits(characteristicMsb, characteristicLsb, that.characteristicMsb, that.characteristicLsb)
+                : compareFields(characteristicUUID, that.characteristicUUID);
         if (result != 0) {
             return result;
         }
-        return compareFields(fieldName, that.fieldName);
+        return compareFields(fieldKey, that.fieldKey);
+    }
+
+    /**
+     * Returns a precomputed sort key of the URL, see {@link URLSortKey}.
+     * @return sort key of the URL
+     */
+    public URLSortKey getSortKey() {
+        URLSortKey result = sortKey;
+        if (result == null) {
+            result = URLSortKey.of(this);
+            sortKey = result;
+        }
+        return result;
+    }
+
+    private int computeHashCode() {
+        int result = protocol != null ? protocol.hashCode() : 0;
+        result = 31 * result + (adapterAddress != null ? adapterAddress.hashCode() : 0);
+        result = 31 * result + (deviceAddress != null ? deviceAddress.hashCode() : 0);
+        result = 31 * result + deviceAttributes.hashCode();
+        result = 31 * result + (serviceUUID != null ? serviceUUID.hashCode() : 0);
+        result = 31 * result + (characteristicUUID != null ? characteristicUUID.hashCode() : 0);
+        result = 31 * result + (fieldKey != null ? fieldKey.hashCode() : 0);
+        return result;
+    }
+
+    private String buildString() {
+        String device = getDeviceCompositeAddress();
+        String[] fields = {adapterAddress == null && device != null ? "" : adapterAddress, device, serviceUUID,
+            characteristicUUID, fieldName};
+        int length = fields.length;
+        while (length > 0 && fields[length - 1] == null) {
+            length--;
+        }
+        StringBuilder builder = new StringBuilder(64);
+        if (protocol != null) {
+            builder.append(protocol).append(':');
+        }
+        builder.append('/');
+        for (int i = 0; i < length; i++) {
+            if (i > 0) {
+                builder.append('/');
+            }
+            builder.append(fields[i]);
+        }
+        return builder.toString();
     }
 
     private void validate() {
@@ -682,11 +871,46 @@ public class URL implements Comparable<URL> {
         }
     }
 
+    private int compareAttributes(URL that) {
+        int length = Math.min(attributeKeys.length, that.attributeKeys.length);
+        for (int i = 0; i < length; i++) {
+            String key = attributeKeys[i];
+            int result = key.compareTo(that.attributeKeys[i]);
+            if (result == 0) {
+                result = deviceAttributes.get(key).compareTo(that.deviceAttributes.get(key));
+            }
+            if (result != 0) {
+                return result;
+            }
+        }
+        return Integer.compare(attributeKeys.length, that.attributeKeys.length);
+    }
+
+    private static String[] sortedKeys(Map<String, String> attributes) {
+        // most URLs do not have attributes, they all share the same empty array
+        String[] keys = attributes.keySet().toArray(NO_KEYS);
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    private static int compareBits(long msb1, long lsb1, long msb2, long lsb2) {
+        int result = Long.compareUnsigned(msb1, msb2);
+        return result != 0 ? result : Long.compareUnsigned(lsb1, lsb2);
+    }
+
+    private static BluetoothUUID parseUUID(String uuid) {
+        return uuid != null ? BluetoothUUID.tryParse(uuid, 0, uuid.length()) : null;
+    }
+
+    private static String toFullForm(String uuid, BluetoothUUID value) {
+        return uuid.length() == FULL_UUID_LENGTH ? uuid : value.toString();
+    }
+
     private static String toUpperCase(String str) {
-        return Optional.ofNullable(str).map(String::toUpperCase).orElse(null);
+        return str != null ? str.toUpperCase() : null;
     }
 
     private static String toLowerCase(String str) {
-        return Optional.ofNullable(str).map(String::toLowerCase).orElse(null);
+        return str != null ? str.toLowerCase() : null;
     }
 }
@@ -0,0 +1,324 @@
+package org.sputnikdev.bluetooth;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Parses large numbers of {@link URL} objects at once, e.g. when persisted URLs are loaded on start up.
+ * URLs can be parsed from a stream of strings, a reader or a newline-delimited (UTF-8) file, one URL per line.
+ * Lines of readers and files are terminated the same way as in {@link BufferedReader#readLine()},
+ * i.e. by "\n", "\r" or "\r\n".
+ *
+ * <p>Input is split into chunks which are parsed in parallel (fork/join, common pool), the order of URLs is preserved.
+ * Invalid lines do not stop parsing, errors are collected along with their line numbers instead.
+ * Blank lines are skipped. Optionally, duplicate URLs can be removed and parsed URLs can be interned
+ * (see {@link URLInterner}).
+ *
+ * <p>Files are memory mapped, so that they are neither copied into the heap nor read line by line.
+ */
+public class URLBulkParser {
+
+    private static final int LINES_THRESHOLD = 1024;
+    private static final int BYTES_THRESHOLD = 64 * 1024;
+
+    private final boolean deduplicate;
+    private final URLInterner interner;
+
+    /**
+     * Creates a parser that keeps duplicates and does not intern URLs.
+     */
+    public URLBulkParser() {
+        this(false, null);
+    }
+
+    /**
+     * Creates a parser with some provided settings.
+     * @param deduplicate whether duplicate URLs should be removed (the first occurrence is kept)
+     * @param interner an interner to intern parsed URLs with or null if URLs should not be interned
+     */
+    public URLBulkParser(boolean deduplicate, URLInterner interner) {
+        this.deduplicate = deduplicate;
+        this.interner = interner;
+    }
+
+    /**
+     * Parses URLs from a stream of strings, one URL per string.
+     * @param lines stream of URL strings
+     * @return parsed URLs and errors
+     */
+    public Result parse(Stream<String> lines) {
+        return parse(lines.collect(Collectors.toList()));
+    }
+
+    /**
+     * Parses URLs from a reader, one URL per line.
+     * @param reader reader
+     * @return parsed URLs and errors
+     * @throws IOException if the reader fails
+     */
+    public Result parse(Reader reader) throws IOException {
+        BufferedReader buffered = reader instanceof BufferedReader
+                ? (BufferedReader) reader : new BufferedReader(reader);
+        List<String> lines = new ArrayList<>();
+        String line;
+        while ((line = buffered.readLine()) != null) {
+            lines.add(line);
+        }
+        return parse(lines);
+    }
+
+    /**
+     * Parses URLs from a newline-delimited file (UTF-8), one URL per line. The file is memory mapped.
+     * @param file file
+     * @return parsed URLs and errors
+     * @throws IOException if the file cannot be read
+     */
+    public Result parse(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("File is too large to be memory mapped: " + file);
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return toResult(new FileTask(buffer, 0, buffer.limit()).invoke());
+        }
+    }
+
+    private Result parse(List<String> lines) {
+        return toResult(new ListTask(lines, 0, lines.size()).invoke());
+    }
+
+    private Result toResult(Chunk chunk) {
+        List<URL> urls = chunk.urls;
+        if (deduplicate) {
+            urls = new ArrayList<>(new LinkedHashSet<>(urls));
+        }
+        return new Result(urls, chunk.errors);
+    }
+
+    private void parseLine(String line, Chunk chunk) {
+        chunk.lines++;
+        if (line.trim().isEmpty()) {
+            return;
+        }
+        try {
+            URL url = new URL(line);
+            chunk.urls.add(interner != null ? interner.intern(url) : url);
+        } catch (IllegalArgumentException ex) {
+            chunk.errors.add(new ParseError(chunk.lines, line, ex.getMessage()));
+        }
+    }
+
+    /**
+     * Result of bulk parsing: parsed URLs and errors.
+     */
+    public static final class Result {
+
+        private final List<URL> urls;
+        private final List<ParseError> errors;
+
+        private Result(List<URL> urls, List<ParseError> errors) {
+            this.urls = Collections.unmodifiableList(urls);
+            this.errors = Collections.unmodifiableList(errors);
+        }
+
+        /**
+         * Returns parsed URLs in the order of their lines.
+         * @return parsed URLs
+         */
+        public List<URL> getURLs() {
+            return urls;
+        }
+
+        /**
+         * Returns errors in the order of their lines.
+         * @return errors
+         */
+        public List<ParseError> getErrors() {
+            return errors;
+        }
+
+        /**
+         * Checks whether there were any invalid lines.
+         * @return true if some lines could not be parsed, false otherwise
+         */
+        public boolean hasErrors() {
+            return !errors.isEmpty();
+        }
+    }
+
+    /**
+     * A line that could not be parsed.
+     */
+    public static final class ParseError {
+
+        private final int line;
+        private final String text;
+        private final String message;
+
+        private ParseError(int line, String text, String message) {
+            this.line = line;
+            this.text = text;
+            this.message = message;
+        }
+
+        /**
+         * Returns line number (starting from 1).
+         * @return line number
+         */
+        public int getLine() {
+            return line;
+        }
+
+        /**
+         * Returns the invalid line.
+         * @return invalid line
+         */
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * Returns the error message.
+         * @return error message
+         */
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return "Line " + line + ": " + message;
+        }
+    }
+
+    private static final class Chunk {
+
+        private final List<URL> urls = new ArrayList<>();
+        private final List<ParseError> errors = new ArrayList<>();
+        private int lines;
+
+        private Chunk merge(Chunk next) {
+            urls.addAll(next.urls);
+            for (ParseError error : next.errors) {
+                // line numbers of the next chunk are relative to its first line
+                errors.add(new ParseError(lines + error.line, error.text, error.message));
+            }
+            lines += next.lines;
+            return this;
+        }
+    }
+
+    private final class ListTask extends RecursiveTask<Chunk> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<String> lines;
+        private final int from;
+        private final int to;
+
+        private ListTask(List<String> lines, int from, int to) {
+            this.lines = lines;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Chunk compute() {
+            if (to - from <= LINES_THRESHOLD) {
+                Chunk chunk = new Chunk();
+                for (int i = from; i < to; i++) {
+                    parseLine(lines.get(i), chunk);
+                }
+                return chunk;
+            }
+            int middle = (from + to) >>> 1;
+            ListTask left = new ListTask(lines, from, middle);
+            left.fork();
+            Chunk right = new ListTask(lines, middle, to).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    private final class FileTask extends RecursiveTask<Chunk> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ByteBuffer buffer;
+        private final int from;
+        private final int to;
+
+        private FileTask(ByteBuffer buffer, int from, int to) {
+            this.buffer = buffer;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Chunk compute() {
+            if (to - from > BYTES_THRESHOLD) {
+                // split right after a line break, so that lines are never split between chunks
+                int middle = nextLine((from + to) >>> 1);
+                if (middle < to) {
+                    FileTask left = new FileTask(buffer, from, middle);
+                    left.fork();
+                    Chunk right = new FileTask(buffer, middle, to).compute();
+                    return left.join().merge(right);
+                }
+            }
+            Chunk chunk = new Chunk();
+            byte[] bytes = new byte[256];
+            int start = from;
+            while (start < to) {
+                int end = nextLine(start);
+                int length = end - start;
+                if (length > 0 && buffer.get(end - 1) == '\n') {
+                    length--;
+                }
+                if (length > 0 && buffer.get(start + length - 1) == '\r') {
+                    length--;
+                }
+                if (bytes.length < length) {
+                    bytes = new byte[Math.max(length, bytes.length * 2)];
+                }
+                for (int i = 0; i < length; i++) {
+                    bytes[i] = buffer.get(start + i);
+                }
+                parseLine(new String(bytes, 0, length, StandardCharsets.UTF_8), chunk);
+                start = end;
+            }
+            return chunk;
+        }
+
+        private int nextLine(int index) {
+            int position = index;
+            while (position < to) {
+                byte next = buffer.get(position++);
+                if (next == '\n') {
+                    break;
+                }
+                if (next == '\r') {
+                    // "\r\n" is a single line break, so that chunks are never split in between
+                    if (position < to && buffer.get(position) == '\n') {
+                        position++;
+                    }
+                    break;
+                }
+            }
+            return position;
+        }
+    }
+
+}
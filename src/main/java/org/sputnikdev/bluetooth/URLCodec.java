@@ -0,0 +1,296 @@
+package org.sputnikdev.bluetooth;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A compact binary encoding of {@link URL} objects for wire transport and persistence.
+ *
+ * <p>An encoded URL starts with two header bytes: a bit mask of present components and the forms of
+ * the service and characteristic UUIDs (4 bits each). The header is followed by the present components:
+ * <ul>
+ *     <li>addresses take 6 bytes (see {@link AddressUtils#parseAddress(CharSequence)})</li>
+ *     <li>UUIDs take 2 or 4 bytes if they are 16-bit or 32-bit (in either the short form or the full form based
+ *     on the Bluetooth base UUID), other UUIDs take 16 bytes</li>
+ *     <li>protocol, field name and device attributes are strings prefixed by their varint length (UTF-8)</li>
+ * </ul>
+ * Components that cannot be represented in the binary form (e.g. non-standard addresses) are encoded as strings,
+ * so that decoding always restores exactly the same URL (as well as its text form).
+ * For example, a typical URL of a field takes 24 bytes instead of about 120 bytes of its text form.
+ */
+public final class URLCodec {
+
+    private static final int PROTOCOL = 0x01;
+    private static final int ADAPTER = 0x02;
+    private static final int ADAPTER_TEXT = 0x04;
+    private static final int DEVICE = 0x08;
+    private static final int DEVICE_TEXT = 0x10;
+    private static final int ATTRIBUTES = 0x20;
+    private static final int FIELD = 0x40;
+
+    private static final int UUID_ABSENT = 0;
+    private static final int UUID_TEXT = 1;
+    private static final int UUID_16 = 2;
+    private static final int UUID_32 = 3;
+    private static final int UUID_BASE_16 = 4;
+    private static final int UUID_BASE_32 = 5;
+    private static final int UUID_128 = 6;
+
+    private static final int FULL_UUID_LENGTH = 36;
+
+    private URLCodec() { }
+
+    /**
+     * Encodes a URL into a byte array.
+     * @param url a URL
+     * @return encoded URL
+     */
+    public static byte[] encode(URL url) {
+        ByteBuffer buffer = ByteBuffer.allocate(maxLength(url));
+        encode(url, buffer);
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    /**
+     * Encodes a URL and puts it into the provided buffer (starting at its current position).
+     * @param url a URL
+     * @param target target buffer
+     * @throws java.nio.BufferOverflowException if there is not enough space in the target buffer
+     */
+    public static void encode(URL url, ByteBuffer target) {
+        String adapter = url.getAdapterAddress();
+        String device = url.getDeviceAddress();
+        final Map<String, String> attributes = url.getDeviceAttributes();
+        int flags = 0;
+        if (url.getProtocol() != null) {
+            flags |= PROTOCOL;
+        }
+        if (adapter != null) {
+            flags |= isPackable(adapter) ? ADAPTER : ADAPTER_TEXT;
+        }
+        if (device != null) {
+            flags |= isPackable(device) ? DEVICE : DEVICE_TEXT;
+        }
+        if (!attributes.isEmpty()) {
+            flags |= ATTRIBUTES;
+        }
+        if (url.getFieldName() != null) {
+            flags |= FIELD;
+        }
+        int serviceForm = uuidForm(url.getServiceUUID());
+        int characteristicForm = uuidForm(url.getCharacteristicUUID());
+        target.put((byte) flags);
+        target.put((byte) (serviceForm | characteristicForm << 4));
+        if ((flags & PROTOCOL) != 0) {
+            putString(url.getProtocol(), target);
+        }
+        putAddress(adapter, flags & (ADAPTER | ADAPTER_TEXT), target);
+        putAddress(device, flags & (DEVICE | DEVICE_TEXT), target);
+        if ((flags & ATTRIBUTES) != 0) {
+            putVarInt(attributes.size(), target);
+            for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+                putString(attribute.getKey(), target);
+                putString(attribute.getValue(), target);
+            }
+        }
+        putUUID(url.getServiceUUID(), serviceForm, target);
+        putUUID(url.getCharacteristicUUID(), characteristicForm, target);
+        if ((flags & FIELD) != 0) {
+            putString(url.getFieldName(), target);
+        }
+    }
+
+    /**
+     * Decodes a URL from a byte array.
+     * @param encoded encoded URL
+     * @return decoded URL
+     * @throws IllegalArgumentException if the data is not a valid encoded URL
+     */
+    public static URL decode(byte[] encoded) {
+        return decode(ByteBuffer.wrap(encoded));
+    }
+
+    /**
+     * Decodes a URL from the provided buffer, the buffer position is moved past the encoded URL.
+     * @param source source buffer
+     * @return decoded URL
+     * @throws IllegalArgumentException if the data is not a valid encoded URL
+     * @throws java.nio.BufferUnderflowException if the encoded URL is incomplete
+     */
+    public static URL decode(ByteBuffer source) {
+        int flags = source.get() & 0xFF;
+        int forms = source.get() & 0xFF;
+        if ((flags & ~(PROTOCOL | ADAPTER | ADAPTER_TEXT | DEVICE | DEVICE_TEXT | ATTRIBUTES | FIELD)) != 0
+                || (flags & (ADAPTER | ADAPTER_TEXT)) == (ADAPTER | ADAPTER_TEXT)
+                || (flags & (DEVICE | DEVICE_TEXT)) == (DEVICE | DEVICE_TEXT)) {
+            throw new IllegalArgumentException("Invalid encoded URL header: " + Integer.toHexString(flags));
+        }
+        String protocol = (flags & PROTOCOL) != 0 ? getString(source) : null;
+        String adapter = getAddress(flags & (ADAPTER | ADAPTER_TEXT), source);
+        String device = getAddress(flags & (DEVICE | DEVICE_TEXT), source);
+        Map<String, String> attributes = null;
+        if ((flags & ATTRIBUTES) != 0) {
+            int size = getVarInt(source);
+            attributes = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                attributes.put(getString(source), getString(source));
+            }
+        }
+        String service = getUUID(forms & 0xF, source);
+        String characteristic = getUUID(forms >>> 4, source);
+        String field = (flags & FIELD) != 0 ? getString(source) : null;
+        return new URL(protocol, adapter, device, attributes, service, characteristic, field);
+    }
+
+    private static int maxLength(URL url) {
+        // header, addresses and UUIDs (or their text forms), strings take up to 3 bytes per char plus varint length
+        int length = 2 + maxLength(url.getProtocol()) + maxLength(url.getAdapterAddress())
+                + maxLength(url.getDeviceAddress()) + Integer.BYTES + maxLength(url.getServiceUUID())
+                + maxLength(url.getCharacteristicUUID()) + maxLength(url.getFieldName());
+        for (Map.Entry<String, String> attribute : url.getDeviceAttributes().entrySet()) {
+            length += maxLength(attribute.getKey()) + maxLength(attribute.getValue());
+        }
+        return length;
+    }
+
+    private static int maxLength(String str) {
+        return str != null ? Integer.BYTES + 1 + Math.max(str.length() * 3, 2 * Long.BYTES) : 0;
+    }
+
+    private static boolean isPackable(String address) {
+        try {
+            return AddressUtils.formatAddress(AddressUtils.parseAddress(address)).equals(address);
+        } catch (IllegalArgumentException ex) {
+            return false;
+        }
+    }
+
+    private static void putAddress(String address, int form, ByteBuffer target) {
+        if ((form & (ADAPTER | DEVICE)) != 0) {
+            long packed = AddressUtils.parseAddress(address);
+            target.putShort((short) (packed >>> 32)).putInt((int) packed);
+        } else if (form != 0) {
+            putString(address, target);
+        }
+    }
+
+    private static String getAddress(int form, ByteBuffer source) {
+        if ((form & (ADAPTER | DEVICE)) != 0) {
+            long packed = (source.getShort() & 0xFFFFL) << 32 | source.getInt() & 0xFFFFFFFFL;
+            return AddressUtils.formatAddress(packed);
+        }
+        return form != 0 ? getString(source) : null;
+    }
+
+    private static int uuidForm(String uuid) {
+        if (uuid == null) {
+            return UUID_ABSENT;
+        }
+        if (uuid.length() == 4 && isHex(uuid, 0, 4)) {
+            return UUID_16;
+        }
+        if (uuid.length() == 8 && isHex(uuid, 0, 8)) {
+            return UUID_32;
+        }
+        if (uuid.length() == FULL_UUID_LENGTH && isFullUUID(uuid)) {
+            BluetoothUUID parsed = BluetoothUUID.parse(uuid);
+            if (parsed.isShort()) {
+                return parsed.is16Bit() ? UUID_BASE_16 : UUID_BASE_32;
+            }
+            return UUID_128;
+        }
+        return UUID_TEXT;
+    }
+
+    private static void putUUID(String uuid, int form, ByteBuffer target) {
+        switch (form) {
+            case UUID_ABSENT:
+                break;
+            case UUID_16:
+            case UUID_BASE_16:
+                target.putShort((short) BluetoothUUID.parse(uuid).getShortUUID());
+                break;
+            case UUID_32:
+            case UUID_BASE_32:
+                target.putInt(BluetoothUUID.parse(uuid).getShortUUID());
+                break;
+            case UUID_128:
+                BluetoothUUID parsed = BluetoothUUID.parse(uuid);
+                target.putLong(parsed.getMostSignificantBits()).putLong(parsed.getLeastSignificantBits());
+                break;
+            default:
+                putString(uuid, target);
+        }
+    }
+
+    private static String getUUID(int form, ByteBuffer source) {
+        switch (form) {
+            case UUID_ABSENT: return null;
+            case UUID_TEXT: return getString(source);
+            case UUID_16: return new String(BluetoothUUID.format(source.getShort(), 4, new char[4], 0));
+            case UUID_32: return new String(BluetoothUUID.format(source.getInt(), 8, new char[8], 0));
+            case UUID_BASE_16: return BluetoothUUID.valueOf(source.getShort() & 0xFFFF).toString();
+            case UUID_BASE_32: return BluetoothUUID.valueOf(source.getInt()).toString();
+            case UUID_128: return new BluetoothUUID(source.getLong(), source.getLong()).toString();
+            default: throw new IllegalArgumentException("Invalid encoded UUID form: " + form);
+        }
+    }
+
+    private static boolean isFullUUID(String uuid) {
+        return uuid.charAt(8) == '-' && uuid.charAt(13) == '-' && uuid.charAt(18) == '-' && uuid.charAt(23) == '-'
+                && isHex(uuid, 0, 8) && isHex(uuid, 9, 13) && isHex(uuid, 14, 18) && isHex(uuid, 19, 23)
+                && isHex(uuid, 24, FULL_UUID_LENGTH);
+    }
+
+    private static boolean isHex(String str, int from, int to) {
+        // only lower case, so that the text form is restored exactly
+        for (int i = from; i < to; i++) {
+            char chr = str.charAt(i);
+            if ((chr < '0' || chr > '9') && (chr < 'a' || chr > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void putString(String str, ByteBuffer target) {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        putVarInt(bytes.length, target);
+        target.put(bytes);
+    }
+
+    private static String getString(ByteBuffer source) {
+        int length = getVarInt(source);
+        if (length < 0 || length > source.remaining()) {
+            throw new IllegalArgumentException("Invalid encoded string length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        source.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void putVarInt(int value, ByteBuffer target) {
+        int remaining = value;
+        while ((remaining & ~0x7F) != 0) {
+            target.put((byte) (remaining & 0x7F | 0x80));
+            remaining >>>= 7;
+        }
+        target.put((byte) remaining);
+    }
+
+    private static int getVarInt(ByteBuffer source) {
+        int result = 0;
+        for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+            int next = source.get();
+            result |= (next & 0x7F) << shift;
+            if ((next & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("Invalid encoded varint");
+    }
+
+}
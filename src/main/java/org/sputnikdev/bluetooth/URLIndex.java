@@ -0,0 +1,311 @@
+package org.sputnikdev.bluetooth;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A prefix tree (trie) of {@link URL} objects which is used to find all ancestors or all descendants of a URL,
+ * e.g. to route a characteristic notification to every subscriber of its adapter, device or service.
+ * The tree is keyed by protocol, adapter address, device address, service UUID, characteristic UUID and field name,
+ * so that both lookups take O(depth) steps (plus the number of found descendants) rather than a scan over all URLs.
+ *
+ * <p>Lookups return exactly the same URLs as {@link URL#isDescendant(URL)} would: a URL without protocol matches
+ * any protocol, and a URL without adapter (or device) address matches any adapter (or device), in which case
+ * the lookup visits all branches of that level. Device attributes do not affect the position of a URL in the tree.
+ *
+ * <p>Nodes of the tree are immutable, modifications copy the path from the root to the modified node and then
+ * replace the root. Therefore lookups never block and can run concurrently with each other and with modifications,
+ * while modifications are serialised. The index is optimised for frequent lookups and rare modifications.
+ *
+ * @param <V> the type of values associated with URLs
+ */
+public class URLIndex<V> {
+
+    private static final int DEPTH = 5;
+    private static final int DEVICE_LEVEL = 1;
+    private static final int FIELD_LEVEL = 4;
+    private static final String MISSING = "";
+
+    private volatile Map<String, Node<V>> roots = Collections.emptyMap();
+    private volatile int size;
+
+    /**
+     * Associates a value with a URL.
+     * @param url a URL
+     * @param value a value
+     * @return the previous value associated with the URL or null if there was not one
+     */
+    public synchronized V put(URL url, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Value must not be null");
+        }
+        String[] path = path(url);
+        Map<String, Node<V>> updatedRoots = new HashMap<>(roots);
+        Node<V> root = updatedRoots.get(url.getProtocol());
+        Object[] previous = new Object[1];
+        updatedRoots.put(url.getProtocol(), insert(root, path, 0, url, value, previous));
+        roots = updatedRoots;
+        if (previous[0] == null) {
+            size++;
+        }
+        @SuppressWarnings("unchecked")
+        V result = (V) previous[0];
+        return result;
+    }
+
+    /**
+     * Removes the value associated with a URL.
+     * @param url a URL
+     * @return the removed value or null if there was not a value associated with the URL
+     */
+    public synchronized V remove(URL url) {
+        V value = get(url);
+        if (value == null) {
+            return null;
+        }
+        String[] path = path(url);
+        Map<String, Node<V>> updatedRoots = new HashMap<>(roots);
+        Node<V> root = delete(updatedRoots.get(url.getProtocol()), path, 0, url);
+        if (root != null) {
+            updatedRoots.put(url.getProtocol(), root);
+        } else {
+            updatedRoots.remove(url.getProtocol());
+        }
+        roots = updatedRoots;
+        size--;
+        return value;
+    }
+
+    /**
+     * Removes all URLs from the index.
+     */
+    public synchronized void clear() {
+        roots = Collections.emptyMap();
+        size = 0;
+    }
+
+    /**
+     * Returns the value associated with a URL.
+     * @param url a URL
+     * @return the value associated with the URL or null if there is not one
+     */
+    public V get(URL url) {
+        Node<V> node = find(roots.get(url.getProtocol()), path(url));
+        return node != null ? node.values.get(url) : null;
+    }
+
+    /**
+     * Returns the number of URLs in the index.
+     * @return number of URLs
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns values of all URLs that the given URL is a descendant of, see {@link URL#isDescendant(URL)}.
+     * @param url a URL
+     * @param inclusive whether values of URLs pointing to the same resource (of a matching protocol) should be included
+     * @return values of ancestors of the URL, the most distant ancestors go first
+     */
+    public List<V> getAncestors(URL url, boolean inclusive) {
+        String[] path = path(url);
+        List<V> result = new ArrayList<>();
+        for (Node<V> root : matchingRoots(url.getProtocol())) {
+            collectAncestors(root, path, 0, inclusive, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns values of all URLs that are descendants of the given URL, see {@link URL#isDescendant(URL)}.
+     * @param url a URL
+     * @param inclusive whether values of URLs pointing to the same resource (of a matching protocol) should be included
+     * @return values of descendants of the URL
+     */
+    public List<V> getDescendants(URL url, boolean inclusive) {
+        String[] path = path(url);
+        List<V> result = new ArrayList<>();
+        for (Node<V> root : matchingRoots(url.getProtocol())) {
+            collectDescendants(root, path, 0, inclusive, result);
+        }
+        return result;
+    }
+
+    private List<Node<V>> matchingRoots(String protocol) {
+        Map<String, Node<V>> current = roots;
+        if (protocol == null) {
+            return new ArrayList<>(current.values());
+        }
+        List<Node<V>> result = new ArrayList<>(2);
+        Node<V> root = current.get(protocol);
+        if (root != null) {
+            result.add(root);
+        }
+        root = current.get(null);
+        if (root != null) {
+            result.add(root);
+        }
+        return result;
+    }
+
+    /**
+     * Collects ancestors of a URL the same way as {@link URL#isDescendant(URL)} matches them. A URL is a descendant
+     * of an ancestor that lacks the adapter or device address the URL has, whereas a URL without adapter or device
+     * address is matched by the rest of its path against any adapter or device. Service and characteristic UUIDs
+     * must be the same unless they are missing in the ancestor.
+     */
+    private static <V> void collectAncestors(Node<V> node, String[] path, int level, boolean exact, List<V> result) {
+        if (level == path.length) {
+            if (exact) {
+                result.addAll(node.values.values());
+            }
+            return;
+        }
+        // URLs of this node lack all the components that the URL has from this level onwards
+        result.addAll(node.values.values());
+        String component = path[level];
+        Node<V> missing = node.children.get(MISSING);
+        Node<V> same = component.isEmpty() ? null : node.children.get(component);
+        if (level <= DEVICE_LEVEL) {
+            if (component.isEmpty()) {
+                for (Map.Entry<String, Node<V>> child : node.children.entrySet()) {
+                    collectAncestors(child.getValue(), path, level + 1, exact && child.getKey().isEmpty(), result);
+                }
+                return;
+            }
+            if (missing != null) {
+                collect(missing, result);
+            }
+        } else if (level < FIELD_LEVEL) {
+            if (component.isEmpty()) {
+                if (missing != null) {
+                    collectAncestors(missing, path, level + 1, exact, result);
+                }
+                return;
+            }
+            if (missing != null) {
+                collect(missing, result);
+            }
+        } else if (!exact) {
+            // an ancestor with the same field is the same resource
+            return;
+        }
+        if (same != null) {
+            collectAncestors(same, path, level + 1, exact, result);
+        }
+    }
+
+    /**
+     * Collects descendants of a URL the same way as {@link URL#isDescendant(URL)} matches them,
+     * see {@link #collectAncestors(Node, String[], int, boolean, List)}.
+     */
+    private static <V> void collectDescendants(Node<V> node, String[] path, int level, boolean exact,
+                                               List<V> result) {
+        if (level == path.length && exact) {
+            result.addAll(node.values.values());
+        }
+        if (level == DEPTH) {
+            return;
+        }
+        String component = level < path.length ? path[level] : MISSING;
+        boolean inPath = exact && level < path.length;
+        if (component.isEmpty()) {
+            for (Map.Entry<String, Node<V>> child : node.children.entrySet()) {
+                if (child.getKey().isEmpty()) {
+                    collectDescendants(child.getValue(), path, level + 1, inPath, result);
+                } else {
+                    // the URL lacks a component that descendants have
+                    collect(child.getValue(), result);
+                }
+            }
+            return;
+        }
+        Node<V> same = node.children.get(component);
+        if (same != null) {
+            collectDescendants(same, path, level + 1, inPath, result);
+        }
+        Node<V> missing = node.children.get(MISSING);
+        if (missing != null && level <= DEVICE_LEVEL) {
+            // descendants without adapter or device address are matched by the rest of their path
+            collectDescendants(missing, path, level + 1, false, result);
+        }
+    }
+
+    private static <V> void collect(Node<V> node, List<V> result) {
+        result.addAll(node.values.values());
+        for (Node<V> child : node.children.values()) {
+            collect(child, result);
+        }
+    }
+
+    private static <V> Node<V> find(Node<V> root, String[] path) {
+        Node<V> node = root;
+        for (int i = 0; node != null && i < path.length; i++) {
+            node = node.children.get(path[i]);
+        }
+        return node;
+    }
+
+    private static <V> Node<V> insert(Node<V> node, String[] path, int depth, URL url, V value, Object[] previous) {
+        Map<String, Node<V>> children = node != null ? node.children : Collections.emptyMap();
+        Map<URL, V> values = node != null ? node.values : Collections.emptyMap();
+        if (depth == path.length) {
+            Map<URL, V> updated = new HashMap<>(values);
+            previous[0] = updated.put(url, value);
+            return new Node<>(children, updated);
+        }
+        Map<String, Node<V>> updated = new HashMap<>(children);
+        updated.put(path[depth], insert(children.get(path[depth]), path, depth + 1, url, value, previous));
+        return new Node<>(updated, values);
+    }
+
+    private static <V> Node<V> delete(Node<V> node, String[] path, int depth, URL url) {
+        Map<String, Node<V>> children = node.children;
+        Map<URL, V> values = node.values;
+        if (depth == path.length) {
+            values = new HashMap<>(values);
+            values.remove(url);
+        } else {
+            children = new HashMap<>(children);
+            Node<V> child = delete(children.get(path[depth]), path, depth + 1, url);
+            if (child != null) {
+                children.put(path[depth], child);
+            } else {
+                children.remove(path[depth]);
+            }
+        }
+        // empty nodes are pruned
+        return children.isEmpty() && values.isEmpty() ? null : new Node<>(children, values);
+    }
+
+    private static String[] path(URL url) {
+        String[] components = {url.getAdapterAddress(), url.getDeviceAddress(), url.getServiceUUID(),
+            url.getCharacteristicUUID(), url.getFieldKey()};
+        int length = DEPTH;
+        while (length > 0 && components[length - 1] == null) {
+            length--;
+        }
+        String[] path = new String[length];
+        for (int i = 0; i < length; i++) {
+            // a missing component in the middle (e.g. a device URL without adapter)
+            path[i] = components[i] != null ? components[i] : MISSING;
+        }
+        return path;
+    }
+
+    private static final class Node<V> {
+
+        private final Map<String, Node<V>> children;
+        private final Map<URL, V> values;
+
+        private Node(Map<String, Node<V>> children, Map<URL, V> values) {
+            this.children = children;
+            this.values = values;
+        }
+    }
+
+}
@@ -0,0 +1,222 @@
+package org.sputnikdev.bluetooth;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded pool of canonical {@link URL} instances. Equal URLs are interned to the same instance,
+ * so that they can be compared by identity and do not occupy the heap more than once.
+ *
+ * <p>The interner also resolves canonical parents and ancestors of URLs, e.g. {@link #getParent(URL)} returns
+ * the same interned instance as {@code intern(url.getParent())}, however the parent is computed only once
+ * per interned URL, any subsequent lookups do not create any new URL objects.
+ *
+ * <p>The pool is split into segments, each segment evicts its least recently used URLs when it is full.
+ * Note that the identity of an evicted URL is lost: once evicted, an equal URL becomes a new canonical instance.
+ * The interner is safe to be used by multiple threads.
+ */
+public class URLInterner {
+
+    private static final int DEFAULT_MAX_SIZE = 4096;
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    /**
+     * Creates an interner that keeps up to 4096 URLs.
+     */
+    public URLInterner() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Creates an interner that keeps up to the given number of URLs.
+     * @param maxSize maximum number of interned URLs
+     */
+    public URLInterner(int maxSize) {
+        if (maxSize < SEGMENTS) {
+            throw new IllegalArgumentException("Maximum size must not be less than " + SEGMENTS + ": " + maxSize);
+        }
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(maxSize / SEGMENTS);
+        }
+    }
+
+    /**
+     * Returns the canonical instance of a URL.
+     * @param url a URL
+     * @return the canonical instance that is equal to the given URL
+     */
+    public URL intern(URL url) {
+        return url != null ? entry(url).url : null;
+    }
+
+    /**
+     * Parses a URL and returns its canonical instance.
+     * @param url text representation of a URL
+     * @return the canonical instance of the URL
+     */
+    public URL intern(String url) {
+        return intern(new URL(url));
+    }
+
+    /**
+     * Returns the canonical instance of the "parent" of a URL, see {@link URL#getParent()}.
+     * @param url a URL
+     * @return the canonical instance of the parent or null if the URL does not have a parent
+     */
+    public URL getParent(URL url) {
+        Entry entry = entry(url);
+        URL parent = entry.parent;
+        if (parent == null) {
+            parent = entry.url.getParent();
+            if (parent == null) {
+                return null;
+            }
+        }
+        // the parent might have been evicted since, interning it again keeps it canonical
+        parent = intern(parent);
+        entry.parent = parent;
+        return parent;
+    }
+
+    /**
+     * Returns the canonical instance of the adapter URL of a given URL, see {@link URL#getAdapterURL()}.
+     * @param url a URL
+     * @return the canonical instance of the adapter URL
+     */
+    public URL getAdapterURL(URL url) {
+        return getAncestor(url, Level.ADAPTER);
+    }
+
+    /**
+     * Returns the canonical instance of the device URL of a given URL, see {@link URL#getDeviceURL()}.
+     * @param url a URL
+     * @return the canonical instance of the device URL
+     */
+    public URL getDeviceURL(URL url) {
+        return getAncestor(url, Level.DEVICE);
+    }
+
+    /**
+     * Returns the canonical instance of the service URL of a given URL, see {@link URL#getServiceURL()}.
+     * @param url a URL
+     * @return the canonical instance of the service URL
+     */
+    public URL getServiceURL(URL url) {
+        return getAncestor(url, Level.SERVICE);
+    }
+
+    /**
+     * Returns the canonical instance of the characteristic URL of a given URL,
+     * see {@link URL#getCharacteristicURL()}.
+     * @param url a URL
+     * @return the canonical instance of the characteristic URL
+     */
+    public URL getCharacteristicURL(URL url) {
+        return getAncestor(url, Level.CHARACTERISTIC);
+    }
+
+    /**
+     * Returns the number of interned URLs.
+     * @return number of interned URLs
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Removes all interned URLs.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    private URL getAncestor(URL url, Level level) {
+        URL ancestor = intern(url);
+        while (ancestor != null && Level.of(ancestor).ordinal() > level.ordinal()) {
+            ancestor = getParent(ancestor);
+        }
+        if (ancestor == null || Level.of(ancestor) != level) {
+            // the URL is above the requested level, fall back to the plain URL logic
+            switch (level) {
+                case ADAPTER: return intern(url.getAdapterURL());
+                case DEVICE: return intern(url.getDeviceURL());
+                case SERVICE: return intern(url.getServiceURL());
+                default: return intern(url.getCharacteristicURL());
+            }
+        }
+        return ancestor;
+    }
+
+    private Entry entry(URL url) {
+        int hash = url.hashCode();
+        Segment segment = segments[(hash ^ hash >>> 16) & (SEGMENTS - 1)];
+        synchronized (segment) {
+            Entry entry = segment.get(url);
+            if (entry == null) {
+                entry = new Entry(url);
+                segment.put(url, entry);
+            }
+            return entry;
+        }
+    }
+
+    private enum Level {
+        ROOT, ADAPTER, DEVICE, SERVICE, CHARACTERISTIC, FIELD;
+
+        private static Level of(URL url) {
+            if (url.isField()) {
+                return FIELD;
+            } else if (url.isCharacteristic()) {
+                return CHARACTERISTIC;
+            } else if (url.isService()) {
+                return SERVICE;
+            } else if (url.isDevice()) {
+                return DEVICE;
+            } else if (url.isAdapter()) {
+                return ADAPTER;
+            } else {
+                return ROOT;
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        private final URL url;
+        private volatile URL parent;
+
+        private Entry(URL url) {
+            this.url = url;
+        }
+    }
+
+    private static final class Segment extends LinkedHashMap<URL, Entry> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int maxSize;
+
+        private Segment(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<URL, Entry> eldest) {
+            return size() > maxSize;
+        }
+    }
+
+}
@@ -0,0 +1,322 @@
+package org.sputnikdev.bluetooth;
+
+/**
+ * A single pass scanner for the text representation of {@link URL}. It accepts exactly the same grammar as
+ * the following regular expression (which was used by the {@link URL} class before):
+ * <pre>
+ * ^((?&lt;protocol&gt;\w*):)?/(?&lt;adapter&gt;(\w\w:){5}\w\w)?
+ * (/(?&lt;device&gt;(\w\w:){5}\w\w)?(\[name=(?&lt;devicename&gt;[\w\s'-]+)\])?)?
+ * (/(?&lt;service&gt;[0-9A-Fa-f]{4,8}(-[0-9A-Fa-f]{4}-[0-9A-Fa-f]{4}-[0-9A-Fa-f]{4}-[0-9A-Fa-f]{12})?))?
+ * (/(?&lt;charact&gt;[0-9A-Fa-f]{4,8}(-[0-9A-Fa-f]{4}-[0-9A-Fa-f]{4}-[0-9A-Fa-f]{4}-[0-9A-Fa-f]{12})?))?
+ * (/(?&lt;field&gt;\w+))?$
+ * </pre>
+ * None of the components can contain a slash, so the text is split into slash separated chunks, each chunk
+ * gets classified once and then chunks get assigned to components in the same order of preference
+ * the regular expression engine would backtrack through. Addresses are converted to upper case,
+ * protocol and UUIDs to lower case, a new string is allocated only if the case actually changes.
+ *
+ * @author Vlad Kolotov
+ */
+final class URLParser {
+
+    private static final int ADDRESS_LENGTH = 17;
+    private static final int UUID_SUFFIX_LENGTH = 28;
+    private static final String NAME_PREFIX = "[name=";
+
+    // component slots in the order they appear in a URL
+    private static final int DEVICE = 0;
+    private static final int SERVICE = 1;
+    private static final int CHARACTERISTIC = 2;
+    private static final int FIELD = 3;
+    private static final int SLOTS = 4;
+
+    // chunk classes, a chunk can belong to several classes at once
+    private static final int DEVICE_CHUNK = 0b001;
+    private static final int UUID_CHUNK = 0b010;
+    private static final int FIELD_CHUNK = 0b100;
+    private static final int CHUNK_BITS = 3;
+
+    String protocol;
+    String adapterAddress;
+    String deviceAddress;
+    String deviceName;
+    String serviceUUID;
+    String characteristicUUID;
+    String fieldName;
+
+    /**
+     * Parses the provided text representation of a URL.
+     * @param url text representation of a URL
+     * @throws IllegalArgumentException if the provided text is not a valid URL
+     */
+    URLParser(String url) {
+        int length = url.length();
+        if (!parse(url, length)) {
+            // "$" also matches before a line terminator at the very end of input
+            int trimmed = trimLineTerminator(url, length);
+            if (trimmed == length || !parse(url, trimmed)) {
+                throw new IllegalArgumentException("Invalid URL: " + url);
+            }
+        }
+    }
+
+    private boolean parse(String url, int end) {
+        protocol = null;
+        adapterAddress = null;
+        deviceAddress = null;
+        deviceName = null;
+        serviceUUID = null;
+        characteristicUUID = null;
+        fieldName = null;
+
+        int pos = 0;
+        while (pos < end && isWord(url.charAt(pos))) {
+            pos++;
+        }
+        if (pos < end && url.charAt(pos) == ':') {
+            protocol = toLowerCase(url, 0, pos);
+            pos++;
+        } else {
+            pos = 0;
+        }
+        if (pos >= end || url.charAt(pos) != '/') {
+            return false;
+        }
+        pos++;
+
+        int chunkEnd = nextSlash(url, pos, end);
+        if (chunkEnd > pos) {
+            if (!isAddress(url, pos, chunkEnd)) {
+                return false;
+            }
+            adapterAddress = toUpperCase(url, pos, chunkEnd);
+        }
+
+        // classifying the rest of chunks
+        int chunks = 0;
+        int classes = 0;
+        for (int from = chunkEnd; from < end; from = chunkEnd, chunks++) {
+            if (chunks == SLOTS) {
+                return false;
+            }
+            chunkEnd = nextSlash(url, from + 1, end);
+            classes |= classify(url, from + 1, chunkEnd) << (chunks * CHUNK_BITS);
+        }
+
+        int assignment = assign(classes, chunks, 0, 0);
+        if (assignment < 0) {
+            return false;
+        }
+
+        chunkEnd = nextSlash(url, pos, end);
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            int from = chunkEnd + 1;
+            chunkEnd = nextSlash(url, from, end);
+            switch ((assignment >> (chunk * 2)) & 0b11) {
+                case DEVICE:
+                    setDevice(url, from, chunkEnd);
+                    break;
+                case SERVICE:
+                    serviceUUID = toLowerCase(url, from, chunkEnd);
+                    break;
+                case CHARACTERISTIC:
+                    characteristicUUID = toLowerCase(url, from, chunkEnd);
+                    break;
+                default:
+                    fieldName = url.substring(from, chunkEnd);
+            }
+        }
+        return true;
+    }
+
+    private void setDevice(String url, int from, int to) {
+        int nameStart = from;
+        if (to - from >= ADDRESS_LENGTH && isAddress(url, from, from + ADDRESS_LENGTH)) {
+            deviceAddress = toUpperCase(url, from, from + ADDRESS_LENGTH);
+            nameStart += ADDRESS_LENGTH;
+        }
+        if (nameStart < to) {
+            deviceName = url.substring(nameStart + NAME_PREFIX.length(), to - 1);
+        }
+    }
+
+    /**
+     * Assigns chunks to URL components with the same preference as the regular expression engine would do, i.e.
+     * every component is greedy, therefore taking a chunk is preferred to skipping the component.
+     * @return assigned component slots (two bits per chunk) or -1 if chunks cannot be assigned
+     */
+    private static int assign(int classes, int chunks, int chunk, int slot) {
+        if (chunk == chunks) {
+            return 0;
+        }
+        if (slot == SLOTS) {
+            return -1;
+        }
+        if (accepts(slot, classes >> (chunk * CHUNK_BITS))) {
+            int rest = assign(classes, chunks, chunk + 1, slot + 1);
+            if (rest >= 0) {
+                return rest | slot << (chunk * 2);
+            }
+        }
+        return assign(classes, chunks, chunk, slot + 1);
+    }
+
+    private static boolean accepts(int slot, int chunkClass) {
+        switch (slot) {
+            case DEVICE: return (chunkClass & DEVICE_CHUNK) != 0;
+            case SERVICE: return (chunkClass & UUID_CHUNK) != 0;
+            case CHARACTERISTIC: return (chunkClass & UUID_CHUNK) != 0;
+            default: return (chunkClass & FIELD_CHUNK) != 0;
+        }
+    }
+
+    private static int classify(String url, int from, int to) {
+        int chunkClass = 0;
+        if (isDevice(url, from, to)) {
+            chunkClass |= DEVICE_CHUNK;
+        }
+        if (isUUID(url, from, to)) {
+            chunkClass |= UUID_CHUNK;
+        }
+        if (isField(url, from, to)) {
+            chunkClass |= FIELD_CHUNK;
+        }
+        return chunkClass;
+    }
+
+    private static boolean isDevice(String url, int from, int to) {
+        int nameStart = from;
+        if (to - from >= ADDRESS_LENGTH && isAddress(url, from, from + ADDRESS_LENGTH)) {
+            nameStart += ADDRESS_LENGTH;
+        }
+        return nameStart == to || isName(url, nameStart, to);
+    }
+
+    private static boolean isAddress(String url, int from, int to) {
+        if (to - from != ADDRESS_LENGTH) {
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            char ch = url.charAt(i);
+            if ((i - from) % 3 == 2 ? ch != ':' : !isWord(ch)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isName(String url, int from, int to) {
+        int valueStart = from + NAME_PREFIX.length();
+        if (to - valueStart < 2 || !url.startsWith(NAME_PREFIX, from) || url.charAt(to - 1) != ']') {
+            return false;
+        }
+        for (int i = valueStart; i < to - 1; i++) {
+            char ch = url.charAt(i);
+            if (!isWord(ch) && !isWhitespace(ch) && ch != '\'' && ch != '-') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isUUID(String url, int from, int to) {
+        int pos = from;
+        while (pos < to && isHex(url.charAt(pos))) {
+            pos++;
+        }
+        int digits = pos - from;
+        if (digits < 4 || digits > 8) {
+            return false;
+        }
+        if (pos == to) {
+            return true;
+        }
+        if (to - pos != UUID_SUFFIX_LENGTH) {
+            return false;
+        }
+        // -XXXX-XXXX-XXXX-XXXXXXXXXXXX
+        for (int i = 0; i < UUID_SUFFIX_LENGTH; i++) {
+            char ch = url.charAt(pos + i);
+            if (i == 0 || i == 5 || i == 10 || i == 15 ? ch != '-' : !isHex(ch)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isField(String url, int from, int to) {
+        if (from == to) {
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            if (!isWord(url.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int nextSlash(String url, int from, int end) {
+        int index = url.indexOf('/', from);
+        return index < 0 || index > end ? end : index;
+    }
+
+    private static int trimLineTerminator(String url, int end) {
+        if (end == 0) {
+            return end;
+        }
+        char last = url.charAt(end - 1);
+        if (last == '\n') {
+            return end > 1 && url.charAt(end - 2) == '\r' ? end - 2 : end - 1;
+        }
+        if (last == '\r' || last == '\u0085' || last == '\u2028' || last == '\u2029') {
+            return end - 1;
+        }
+        return end;
+    }
+
+    private static boolean isWord(char ch) {
+        return ch >= 'a' && ch <= 'z' || ch >= 'A' && ch <= 'Z' || ch >= '0' && ch <= '9' || ch == '_';
+    }
+
+    private static boolean isHex(char ch) {
+        return ch >= '0' && ch <= '9' || ch >= 'a' && ch <= 'f' || ch >= 'A' && ch <= 'F';
+    }
+
+    private static boolean isWhitespace(char ch) {
+        return ch == ' ' || ch == '\t' || ch == '\n' || ch == '\u000B' || ch == '\f' || ch == '\r';
+    }
+
+    private static String toUpperCase(String url, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char ch = url.charAt(i);
+            if (ch >= 'a' && ch <= 'z') {
+                return convertCase(url, from, to, i, 'a', 'z', 'A' - 'a');
+            }
+        }
+        return url.substring(from, to);
+    }
+
+    private static String toLowerCase(String url, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char ch = url.charAt(i);
+            if (ch >= 'A' && ch <= 'Z') {
+                return convertCase(url, from, to, i, 'A', 'Z', 'a' - 'A');
+            }
+        }
+        return url.substring(from, to);
+    }
+
+    private static String convertCase(String url, int from, int to, int firstChange, char low, char high, int shift) {
+        char[] chars = new char[to - from];
+        url.getChars(from, to, chars, 0);
+        for (int i = firstChange - from; i < chars.length; i++) {
+            char ch = chars[i];
+            if (ch >= low && ch <= high) {
+                chars[i] = (char) (ch + shift);
+            }
+        }
+        return new String(chars);
+    }
+
+}
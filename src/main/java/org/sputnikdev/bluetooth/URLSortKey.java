@@ -0,0 +1,175 @@
+package org.sputnikdev.bluetooth;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A precomputed, comparison-friendly sort key of a {@link URL}. Addresses are packed into longs and UUIDs are
+ * stored as pairs of longs (see {@link BluetoothUUID}), so that keys are compared by a few long comparisons
+ * rather than by string comparisons. Keys are meant to be used in sorted collections,
+ * e.g. {@link java.util.TreeMap} or {@link java.util.concurrent.ConcurrentSkipListMap}.
+ *
+ * <p>Keys are ordered by protocol, adapter, device (address and attributes), service, characteristic and field name
+ * (case insensitive). Note that keys are canonical: short and full forms of the same UUID give equal keys
+ * (see {@link URL#toCanonical()}).
+ *
+ * <p>All descendants of a URL (and the URL itself) form a contiguous range of keys starting from the key of the URL
+ * and ending just before the {@link #upperBound(URL)} key, e.g. all URLs under a device can be found by:
+ * {@code map.subMap(URLSortKey.of(device), URLSortKey.upperBound(device))}. Note that a range only holds URLs
+ * that share all components of the given URL, which is narrower than {@link URL#isDescendant(URL)}:
+ * <ul>
+ *     <li>protocols must match exactly;</li>
+ *     <li>a URL without an adapter (or a device) is not an ancestor of URLs that have one, e.g. the range of
+ *     {@code //11:22:33:44:55:66} does not include {@code /54:60:09:95:86:01/11:22:33:44:55:66/180f}.</li>
+ * </ul>
+ */
+public final class URLSortKey implements Comparable<URLSortKey> {
+
+    private static final int LEVELS = 5;
+    private static final int DEVICE_LEVEL = 1;
+    // non-standard addresses and UUIDs go after standard ones and are compared as strings
+    private static final long NON_STANDARD = -1L;
+
+    private final String protocol;
+    private final int depth;
+    private final long[] high;
+    private final long[] low;
+    private final String[] text;
+    private final boolean upper;
+
+    private URLSortKey(URL url, boolean upper) {
+        this.protocol = url.getProtocol();
+        this.upper = upper;
+        high = new long[LEVELS];
+        low = new long[LEVELS];
+        text = new String[LEVELS];
+        int levels = 0;
+        if (url.getAdapterAddress() != null) {
+            setAddress(0, url.getAdapterAddress());
+            levels = 1;
+        }
+        if (url.getDeviceAddress() != null) {
+            setAddress(DEVICE_LEVEL, url.getDeviceAddress());
+            levels = 2;
+        }
+        if (!url.getDeviceAttributes().isEmpty()) {
+            StringBuilder attributes = new StringBuilder(text[DEVICE_LEVEL] != null ? text[DEVICE_LEVEL] : "");
+            for (Map.Entry<String, String> entry : new TreeMap<>(url.getDeviceAttributes()).entrySet()) {
+                attributes.append('\0').append(entry.getKey()).append('\0').append(entry.getValue());
+            }
+            text[DEVICE_LEVEL] = attributes.toString();
+            levels = 2;
+        }
+        if (url.getServiceUUID() != null) {
+            setUUID(2, url.getServiceUUID());
+            levels = 3;
+        }
+        if (url.getCharacteristicUUID() != null) {
+            setUUID(3, url.getCharacteristicUUID());
+            levels = 4;
+        }
+        if (url.getFieldKey() != null) {
+            text[4] = url.getFieldKey();
+            levels = LEVELS;
+        }
+        this.depth = levels;
+    }
+
+    /**
+     * Returns the sort key of a URL.
+     * @param url a URL
+     * @return sort key
+     */
+    public static URLSortKey of(URL url) {
+        return new URLSortKey(url, false);
+    }
+
+    /**
+     * Returns a key that is greater than the keys of the URL and all its descendants,
+     * but less than the keys of any other URLs that are greater than the URL.
+     * @param url a URL
+     * @return upper bound key (exclusive) of the URL descendants
+     */
+    public static URLSortKey upperBound(URL url) {
+        return new URLSortKey(url, true);
+    }
+
+    @Override
+    public int compareTo(URLSortKey that) {
+        int result = compareStrings(protocol, that.protocol);
+        if (result != 0) {
+            return result;
+        }
+        int common = Math.min(depth, that.depth);
+        for (int i = 0; i < common; i++) {
+            result = Long.compareUnsigned(high[i], that.high[i]);
+            if (result == 0) {
+                result = Long.compareUnsigned(low[i], that.low[i]);
+            }
+            if (result == 0) {
+                result = compareStrings(text[i], that.text[i]);
+            }
+            if (result != 0) {
+                return result;
+            }
+        }
+        if (depth != that.depth) {
+            // a shorter key is a prefix (ancestor) of the longer one
+            return depth < that.depth ? (upper ? 1 : -1) : (that.upper ? -1 : 1);
+        }
+        return Boolean.compare(upper, that.upper);
+    }
+
+    @Override
+    public boolean equals(Object that) {
+        if (this == that) {
+            return true;
+        }
+        if (that == null || getClass() != that.getClass()) {
+            return false;
+        }
+        return compareTo((URLSortKey) that) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = protocol != null ? protocol.hashCode() : 0;
+        result = 31 * result + depth;
+        result = 31 * result + Arrays.hashCode(high);
+        result = 31 * result + Arrays.hashCode(low);
+        result = 31 * result + Arrays.hashCode(text);
+        return 31 * result + (upper ? 1 : 0);
+    }
+
+    private void setAddress(int level, String address) {
+        try {
+            long packed = AddressUtils.parseAddress(address);
+            // zero is reserved for missing addresses (e.g. a device specified by attributes only)
+            high[level] = packed + 1;
+        } catch (IllegalArgumentException ex) {
+            high[level] = NON_STANDARD;
+            text[level] = address;
+        }
+    }
+
+    private void setUUID(int level, String uuid) {
+        BluetoothUUID value = BluetoothUUID.tryParse(uuid, 0, uuid.length());
+        if (value != null) {
+            high[level] = value.getMostSignificantBits();
+            low[level] = value.getLeastSignificantBits();
+        } else {
+            high[level] = NON_STANDARD;
+            low[level] = NON_STANDARD;
+            text[level] = uuid;
+        }
+    }
+
+    private static int compareStrings(String str1, String str2) {
+        if (str1 == null) {
+            return str2 == null ? 0 : -1;
+        }
+        return str2 == null ? 1 : str1.compareTo(str2);
+    }
+
+}
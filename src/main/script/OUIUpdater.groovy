@@ -1,38 +1,60 @@
+import java.nio.charset.StandardCharsets
 import java.util.regex.Matcher
 import java.util.regex.Pattern
 
 class OUIUpdater {
 
     public static update(project) {
-        java.net.URL url = new java.net.URL("http://standards-oui.ieee.org/oui.txt");
-        Pattern id = Pattern.compile('^(\\w{6}).*$');
-        Scanner s = new Scanner(url.openStream()).useDelimiter('\r\n');
+        // a local copy of the IEEE registry can be provided to regenerate the registry offline
+        String source = System.getProperty("oui.source");
+        java.net.URL url = source != null ? new File(source).toURI().toURL()
+                : new java.net.URL("http://standards-oui.ieee.org/oui.txt");
+        Pattern id = Pattern.compile('^(\\w{6})\\s*(\\(base 16\\))?\\s*(.*)$');
+        Scanner s;
+        try {
+            s = new Scanner(url.openStream()).useDelimiter('\r\n');
+        } catch (IOException e) {
+            println "Organizational Unique Identifiers registry is not available, keeping the existing one: " + e;
+            return;
+        }
         s.next(); //
         s.next(); // skip header
 
-        HashSet<Integer> registry = new HashSet<>();
+        TreeMap<Integer, String> registry = new TreeMap<>();
 
         while (s.hasNext()) {
             String line = s.next();
             Matcher matcher = id.matcher(line);
             if (matcher.find()) {
                 String oui = matcher.group(1);
-                registry.add(Integer.valueOf(oui, 16));
+                registry.putIfAbsent(Integer.valueOf(oui, 16), matcher.group(3).trim());
             }
         }
 
-        File regFile = new File("src/main/resources/oui_registry.ser");
+        // flat binary registry, all integers are big-endian 32-bit integers:
+        // number of OUIs, sorted OUIs, offsets of vendor names in the string pool (plus the end of the pool),
+        // string pool of UTF-8 encoded vendor names
+        File regFile = new File("src/main/resources/oui_registry.bin");
         if (regFile.exists()) {
             regFile.delete();
         }
         regFile.createNewFile();
-        FileOutputStream fileOut = new FileOutputStream(regFile);
-        ObjectOutputStream objectOut = new ObjectOutputStream(fileOut);
+        DataOutputStream dataOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(regFile)));
 
-        objectOut.writeObject(registry);
+        dataOut.writeInt(registry.size());
+        for (Integer oui : registry.keySet()) {
+            dataOut.writeInt(oui);
+        }
+        ByteArrayOutputStream pool = new ByteArrayOutputStream();
+        for (String vendor : registry.values()) {
+            dataOut.writeInt(pool.size());
+            pool.write(vendor.getBytes(StandardCharsets.UTF_8));
+        }
+        dataOut.writeInt(pool.size());
+        pool.writeTo(dataOut);
 
-        objectOut.close();
+        dataOut.close();
 
         println "Organizational Unique Identifiers registry has been updated: " + registry.size();
     }
-}
\ No newline at end of file
+}
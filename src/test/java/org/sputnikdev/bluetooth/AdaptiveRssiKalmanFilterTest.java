@@ -0,0 +1,89 @@
+package org.sputnikdev.bluetooth;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveRssiKalmanFilterTest {
+
+    @Test
+    public void testSameAsKalmanFilterUntilWindowIsFull() {
+        AdaptiveRssiKalmanFilter adaptive = new AdaptiveRssiKalmanFilter(5, 0.5, 10);
+        RssiKalmanFilter fixed = new RssiKalmanFilter(0.5, 10);
+        short[] readings = {-40, -40, -41, -40, -41};
+        for (short rssi : readings) {
+            assertEquals(fixed.next(Short.valueOf(rssi)), adaptive.next(Short.valueOf(rssi)));
+            assertEquals(fixed.currentAsDouble(), adaptive.currentAsDouble(), 0.0);
+        }
+        assertEquals(0.5, adaptive.getProcessNoise(), 0.0);
+        assertEquals(10, adaptive.getMeasurementNoise(), 0.0);
+        adaptive.next((short) -56);
+        assertEquals(5, adaptive.getWindow());
+        assertTrue(adaptive.getMeasurementNoise() != 10);
+        assertEquals((short) adaptive.currentAsDouble(), adaptive.currentAsShort());
+    }
+
+    @Test
+    public void testEstimatesMeasurementNoise() {
+        Random random = new Random(1);
+        for (double sigma : new double[] {1, 3, 6}) {
+            AdaptiveRssiKalmanFilter filter = new AdaptiveRssiKalmanFilter(50, 0.125, 30);
+            double sum = 0;
+            int count = 0;
+            for (int i = 0; i < 10000; i++) {
+                filter.next(-60 + random.nextGaussian() * sigma);
+                if (i >= 100) {
+                    sum += filter.getMeasurementNoise();
+                    count++;
+                }
+            }
+            assertEquals(sigma * sigma, sum / count, sigma * sigma * 0.05);
+        }
+    }
+
+    @Test
+    public void testFollowsChangesFasterThanFixedFilter() {
+        Random random = new Random(2);
+        AdaptiveRssiKalmanFilter adaptive = new AdaptiveRssiKalmanFilter();
+        RssiKalmanFilter fixed = new RssiKalmanFilter();
+        double adaptiveError = 0;
+        double fixedError = 0;
+        double truth = -60;
+        for (int i = 0; i < 20000; i++) {
+            if (i % 500 == 0) {
+                // device moves
+                truth = -50 - random.nextInt(40);
+            }
+            short rssi = (short) Math.round(truth + random.nextGaussian() * 3);
+            adaptiveError += Math.pow(adaptive.next((double) rssi) - truth, 2);
+            fixedError += Math.pow(fixed.next((double) rssi) - truth, 2);
+        }
+        assertTrue(adaptiveError + " vs " + fixedError, adaptiveError < fixedError / 2);
+    }
+
+    @Test
+    public void testReset() {
+        AdaptiveRssiKalmanFilter filter = new AdaptiveRssiKalmanFilter(5, 0.5, 10);
+        short[] readings = {-40, -40, -41, -40, -41, -56, -41, -40, -40};
+        double[] expected = new double[readings.length];
+        for (int i = 0; i < readings.length; i++) {
+            expected[i] = filter.next((double) readings[i]);
+        }
+        filter.reset();
+        assertEquals(0.5, filter.getProcessNoise(), 0.0);
+        assertEquals(10, filter.getMeasurementNoise(), 0.0);
+        assertEquals(0, filter.currentAsDouble(), 0.0);
+        for (int i = 0; i < readings.length; i++) {
+            assertEquals(expected[i], filter.next((double) readings[i]), 0.0);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidWindow() {
+        new AdaptiveRssiKalmanFilter(1, 0.125, 30);
+    }
+
+}
@@ -2,7 +2,20 @@ package org.sputnikdev.bluetooth;
 
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class AddressUtilsTest {
 
@@ -24,10 +37,164 @@ public class AddressUtilsTest {
         assertAddressType(AddressType.COMPOSITE, new URL("tinyb://XX:XX:XX:XX:XX:XX"));
     }
 
+    @Test
+    public void testParseAndFormatAddress() {
+        assertEquals(0x546009958601L, AddressUtils.parseAddress("54:60:09:95:86:01"));
+        assertEquals(0xABCDEF012345L, AddressUtils.parseAddress("ab:Cd:eF:01:23:45"));
+        assertEquals(0L, AddressUtils.parseAddress("00:00:00:00:00:00"));
+        assertEquals(0xFFFFFFFFFFFFL, AddressUtils.parseAddress("FF:FF:FF:FF:FF:FF"));
+
+        assertEquals("54:60:09:95:86:01", AddressUtils.formatAddress(0x546009958601L));
+        assertEquals("AB:CD:EF:01:23:45", AddressUtils.formatAddress(0xABCDEF012345L));
+        assertEquals("00:00:00:00:00:00", AddressUtils.formatAddress(0L));
+        assertEquals("[FF:FF:FF:FF:FF:FF]",
+                AddressUtils.formatAddress(0xFFFFFFFFFFFFL, new StringBuilder("[")).append(']').toString());
+
+        Random random = new Random(1);
+        for (int i = 0; i < 10_000; i++) {
+            long address = random.nextLong() & 0xFFFFFFFFFFFFL;
+            String formatted = AddressUtils.formatAddress(address);
+            assertEquals(address, AddressUtils.parseAddress(formatted));
+            assertEquals(AddressUtils.guessAddressType(formatted), AddressUtils.guessAddressType(address));
+            assertEquals(AddressUtils.isOui(formatted), AddressUtils.isOui(address));
+        }
+
+        assertTrue(AddressUtils.isValidAddress(0xFFFFFFFFFFFFL));
+        assertFalse(AddressUtils.isValidAddress(0x1000000000000L));
+        assertFalse(AddressUtils.isValidAddress(-1L));
+    }
+
+    @Test
+    public void testGuessAddressTypes() {
+        Random random = new Random(2);
+        int[] registry = AddressUtils.loadOuiRegistry();
+        int length = 20_000;
+        long[] addresses = new long[length];
+        ByteBuffer reports = ByteBuffer.allocate(3 + length * 6 + 5);
+        ((Buffer) reports).position(3);
+        for (int i = 0; i < length; i++) {
+            long address = random.nextLong() & 0xFFFFFFFFFFFFL;
+            if (i % 3 == 0) {
+                // registered OUI
+                address = (long) registry[random.nextInt(registry.length)] << 24 | address & 0xFFFFFF;
+            }
+            addresses[i] = address;
+            for (int j = 0; j < 6; j++) {
+                reports.put((byte) (address >>> j * 8));
+            }
+        }
+        ((Buffer) reports).position(3).limit(3 + length * 6 + 5);
+
+        byte[] types = new byte[length];
+        byte[] parallelTypes = new byte[length];
+        byte[] reportTypes = new byte[length];
+        byte[] parallelReportTypes = new byte[length];
+        AddressUtils.guessAddressTypes(addresses, length, types);
+        AddressUtils.guessAddressTypesParallel(addresses, length, parallelTypes);
+        assertEquals(length, AddressUtils.guessAddressTypes(reports, reportTypes));
+        assertEquals(length, AddressUtils.guessAddressTypesParallel(reports, parallelReportTypes));
+        assertEquals(3, reports.position());
+        for (int i = 0; i < length; i++) {
+            assertEquals(AddressUtils.guessAddressType(addresses[i]).ordinal(), types[i]);
+        }
+        assertArrayEquals(types, parallelTypes);
+        assertArrayEquals(types, reportTypes);
+        assertArrayEquals(types, parallelReportTypes);
+
+        // HCI reports are little-endian
+        ByteBuffer report = ByteBuffer.wrap(new byte[] {(byte) 0xEE, 0x7A, (byte) 0xD0, (byte) 0xA8, 0x65, 0x4C});
+        assertEquals(1, AddressUtils.guessAddressTypes(report, types));
+        assertEquals(AddressType.PUBLIC.ordinal(), types[0]);
+    }
+
+    @Test
+    public void testOuiRegistry() {
+        int[] registry = AddressUtils.loadOuiRegistry();
+        assertArrayEquals(AddressUtils.loadLegacyOuiRegistry(), registry);
+        for (int i = 1; i < registry.length; i++) {
+            assertTrue(registry[i - 1] < registry[i]);
+        }
+
+        assertTrue(AddressUtils.isOui("4C:65:A8:D0:7A:EE"));
+        assertTrue(AddressUtils.isOui("4c65a8d07aee"));
+        assertFalse(AddressUtils.isOui("4C:65:00:D0:7A:EE"));
+        assertTrue(AddressUtils.isOui(0x4C65A8D07AEEL));
+        assertFalse(AddressUtils.isOui(0x4C6500D07AEEL));
+    }
+
+    @Test
+    public void testLookupVendor() throws IOException {
+        int[] ouis = {0x000000, 0x4C65A8, 0xAC7C8D};
+        String[] vendors = {"XEROX CORPORATION", "IEEE Registration Authority", "Ünïcödé Vendor"};
+        ByteArrayOutputStream pool = new ByteArrayOutputStream();
+        ByteArrayOutputStream registry = new ByteArrayOutputStream();
+        DataOutputStream dataOut = new DataOutputStream(registry);
+        dataOut.writeInt(ouis.length);
+        for (int oui : ouis) {
+            dataOut.writeInt(oui);
+        }
+        for (String vendor : vendors) {
+            dataOut.writeInt(pool.size());
+            pool.write(vendor.getBytes(StandardCharsets.UTF_8));
+        }
+        dataOut.writeInt(pool.size());
+        pool.writeTo(dataOut);
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(registry.size());
+        ((Buffer) buffer.put(registry.toByteArray())).flip();
+        for (int i = 0; i < ouis.length; i++) {
+            assertEquals(vendors[i], AddressUtils.readVendor(buffer, ouis[i]));
+        }
+        assertNull(AddressUtils.readVendor(buffer, 0x4C6500));
+        assertNull(AddressUtils.readVendor(buffer, 0xFFFFFF));
+
+        // registry without vendor names
+        ((Buffer) buffer).limit(Integer.BYTES * (ouis.length + 1));
+        assertNull(AddressUtils.readVendor(buffer, 0x4C65A8));
+
+        // the bundled registry does not contain vendor names until it is generated from the IEEE list
+        assertTrue(AddressUtils.isOui("00:03:93:D0:7A:EE"));
+        assertNull(AddressUtils.lookupVendor("00:03:93:D0:7A:EE"));
+        assertNull(AddressUtils.lookupVendor(0xB827EBD07AEEL));
+        assertNull(AddressUtils.lookupVendor(0xFFFFFFD07AEEL));
+    }
+
+    @Test
+    public void testCopyOuiRegistry() throws IOException {
+        byte[] registry = new byte[600 * 1024];
+        new Random(1).nextBytes(registry);
+        for (long length : new long[] {-1, 0, 1024, registry.length}) {
+            ByteBuffer buffer = AddressUtils.copyOuiRegistry(new ByteArrayInputStream(registry), length);
+            assertEquals(registry.length, buffer.remaining());
+            byte[] copy = new byte[buffer.remaining()];
+            buffer.get(copy);
+            assertArrayEquals(registry, copy);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseAddressInvalidLength() {
+        AddressUtils.parseAddress("54:60:09:95:86");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseAddressInvalidSeparator() {
+        AddressUtils.parseAddress("54-60-09-95-86-01");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseAddressInvalidDigit() {
+        AddressUtils.parseAddress("XX:XX:XX:XX:XX:XX");
+    }
+
     private void assertAddressType(AddressType expected, URL address) {
         assertEquals(expected, AddressUtils.guessDeviceAddressType(address));
         if (address.getDeviceAddress() != null) {
             assertEquals(expected, AddressUtils.guessAddressType(address.getDeviceAddress()));
+            if (expected != AddressType.COMPOSITE) {
+                assertEquals(expected,
+                        AddressUtils.guessAddressType(AddressUtils.parseAddress(address.getDeviceAddress())));
+            }
         }
     }
 
@@ -0,0 +1,83 @@
+package org.sputnikdev.bluetooth;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BluetoothUUIDTest {
+
+    private static final String BATTERY_SERVICE = "0000180f-0000-1000-8000-00805f9b34fb";
+
+    @Test
+    public void testShortAndFullForms() {
+        BluetoothUUID full = BluetoothUUID.parse(BATTERY_SERVICE);
+        assertEquals(full, BluetoothUUID.parse("180f"));
+        assertEquals(full, BluetoothUUID.parse("180F"));
+        assertEquals(full, BluetoothUUID.parse("0000180f"));
+        assertEquals(full, BluetoothUUID.parse("0000180F-0000-1000-8000-00805F9B34FB"));
+        assertEquals(full, BluetoothUUID.valueOf(0x180f));
+        assertEquals(full, BluetoothUUID.parse("180f-0000-1000-8000-00805f9b34fb"));
+        assertEquals(full.hashCode(), BluetoothUUID.parse("180f").hashCode());
+        assertEquals(0, full.compareTo(BluetoothUUID.parse("180f")));
+
+        assertTrue(full.isShort());
+        assertTrue(full.is16Bit());
+        assertEquals(0x180f, full.getShortUUID());
+        assertEquals("180f", full.toShortString());
+        assertEquals(BATTERY_SERVICE, full.toString());
+        assertEquals(UUID.fromString(BATTERY_SERVICE), full.toUUID());
+
+        BluetoothUUID uuid32 = BluetoothUUID.parse("1234180f");
+        assertTrue(uuid32.isShort());
+        assertFalse(uuid32.is16Bit());
+        assertEquals("1234180f", uuid32.toShortString());
+        assertEquals("1234180f-0000-1000-8000-00805f9b34fb", uuid32.toString());
+
+        BluetoothUUID vendor = BluetoothUUID.parse("f000aa00-0451-4000-b000-000000000000");
+        assertFalse(vendor.isShort());
+        assertEquals("f000aa00-0451-4000-b000-000000000000", vendor.toShortString());
+    }
+
+    @Test
+    public void testSameAsUUID() {
+        Random random = new Random(1);
+        for (int i = 0; i < 10000; i++) {
+            UUID uuid = new UUID(random.nextLong(), random.nextLong());
+            BluetoothUUID value = BluetoothUUID.parse(uuid.toString());
+            assertEquals(uuid.toString(), value.toString());
+            assertEquals(uuid, value.toUUID());
+            assertEquals(value, BluetoothUUID.valueOf(uuid));
+
+            UUID other = new UUID(random.nextLong(), random.nextLong());
+            int expected = Long.compareUnsigned(uuid.getMostSignificantBits(), other.getMostSignificantBits());
+            if (expected == 0) {
+                expected = Long.compareUnsigned(uuid.getLeastSignificantBits(), other.getLeastSignificantBits());
+            }
+            assertEquals(Integer.signum(expected), Integer.signum(value.compareTo(BluetoothUUID.valueOf(other))));
+        }
+    }
+
+    @Test
+    public void testParseRange() {
+        assertEquals(BluetoothUUID.valueOf(0x2a19), BluetoothUUID.parse("/180f/2a19/Level", 6, 10));
+    }
+
+    @Test
+    public void testInvalid() {
+        for (String invalid : new String[] {"", "18f", "123456789", "180g", "0000180f-0000-1000-8000-00805f9b34f",
+            "0000180f+0000-1000-8000-00805f9b34fb", "18f-0000-1000-8000-00805f9b34fb"}) {
+            try {
+                BluetoothUUID.parse(invalid);
+                throw new AssertionError("Expected to fail: " + invalid);
+            } catch (IllegalArgumentException ex) {
+                // expected
+            }
+        }
+    }
+
+}
@@ -0,0 +1,123 @@
+package org.sputnikdev.bluetooth;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrentRssiKalmanFilterTest {
+
+    private static final short[] READINGS = {-40, -40, -41, -40, -41, -56, -41, -40, -40};
+
+    @Test
+    public void testSameAsKalmanFilter() {
+        ConcurrentRssiKalmanFilter filter = new ConcurrentRssiKalmanFilter();
+        RssiKalmanFilter expected = new RssiKalmanFilter();
+        assertEquals(0, (short) filter.current());
+        for (short rssi : READINGS) {
+            assertEquals(expected.next((double) rssi), filter.next((double) rssi), 0.0);
+        }
+        assertEquals(expected.current(), filter.current());
+        assertEquals(-40, filter.currentAsShort());
+    }
+
+    @Test
+    public void testGetSetNoise() {
+        ConcurrentRssiKalmanFilter filter = new ConcurrentRssiKalmanFilter(0.025, 30);
+        assertEquals(0.025, filter.getProcessNoise(), 0.0);
+        assertEquals(30.0, filter.getMeasurementNoise(), 0.0);
+        filter.setProcessNoise(0.5);
+        filter.setMeasurementNoise(0.6);
+        assertEquals(0.5, filter.getProcessNoise(), 0.0);
+        assertEquals(0.6, filter.getMeasurementNoise(), 0.0);
+    }
+
+    @Test
+    public void testResetSnapshotRestore() {
+        ConcurrentRssiKalmanFilter filter = new ConcurrentRssiKalmanFilter(0.5, 10);
+        assertFalse(filter.snapshot().isInitialized());
+        for (short rssi : READINGS) {
+            filter.next(rssi);
+        }
+        KalmanFilterState state = filter.snapshot();
+        ConcurrentRssiKalmanFilter copy = new ConcurrentRssiKalmanFilter();
+        copy.copyFrom(filter);
+        RssiKalmanFilter restored = new RssiKalmanFilter();
+        restored.restore(state);
+        for (short rssi : READINGS) {
+            double expected = filter.next((double) rssi);
+            assertEquals(expected, copy.next((double) rssi), 0.0);
+            assertEquals(expected, restored.next((double) rssi), 0.0);
+        }
+        assertEquals(0.5, copy.getProcessNoise(), 0.0);
+
+        filter.reset();
+        assertEquals(0, filter.currentAsDouble(), 0.0);
+        assertEquals(-56, filter.next((short) -56));
+        filter.restore(state);
+        assertEquals(state.getRssi(), filter.currentAsDouble(), 0.0);
+        assertEquals(state.getErrorCovariance(), filter.getErrorCovariance(), 0.0);
+    }
+
+    @Test
+    public void testConcurrentUpdates() throws Exception {
+        final int writers = 4;
+        final int readings = 20000;
+        // with zero process noise the error covariance strictly decreases with every reading
+        // regardless of reading values, so that a lost update would be noticed
+        ConcurrentRssiKalmanFilter filter = new ConcurrentRssiKalmanFilter(0, 30);
+        ExecutorService executor = Executors.newFixedThreadPool(writers + 1);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            AtomicBoolean running = new AtomicBoolean(true);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                final int seed = w;
+                futures.add(executor.submit((Callable<Void>) () -> {
+                    Random random = new Random(seed);
+                    start.await();
+                    for (int i = 0; i < readings; i++) {
+                        filter.next((short) (-40 - random.nextInt(41)));
+                    }
+                    return null;
+                }));
+            }
+            Future<?> reader = executor.submit((Callable<Void>) () -> {
+                start.await();
+                while (running.get()) {
+                    double current = filter.currentAsDouble();
+                    assertTrue(current == 0 || current >= -80 && current <= -40);
+                }
+                return null;
+            });
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            running.set(false);
+            reader.get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        ConcurrentRssiKalmanFilter expected = new ConcurrentRssiKalmanFilter(0, 30);
+        for (int i = 0; i < writers * readings; i++) {
+            expected.next((short) -60);
+        }
+        assertEquals(expected.getErrorCovariance(), filter.getErrorCovariance(), 0.0);
+        double current = filter.currentAsDouble();
+        assertTrue(current >= -80 && current <= -40);
+    }
+
+}
@@ -2,13 +2,106 @@ package org.sputnikdev.bluetooth;
 
 import org.junit.Test;
 
+import java.io.StringWriter;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
 import static org.junit.Assert.*;
 
 public class DataConversionUtilsTest {
+
+    private static final byte[] DATA = {0x54, 0x3d, 0x32, 0x37, 0x2e, 0x36, 0x20, 0x48, 0x3d, 0x39, 0x32, 0xe, 0x36,
+        0x00, (byte) 0xff, (byte) 0x80};
+
     @Test
     public void testConvertByteArray() throws Exception {
         byte[] data = {0x54, 0x3d, 0x32, 0x37, 0x2e, 0x36, 0x20, 0x48, 0x3d, 0x39, 0x32, 0xe, 0x36, 0x00};
         assertEquals("[54, 3d, 32, 37, 2e, 36, 20, 48, 3d, 39, 32, 0e, 36, 00]", DataConversionUtils.convert(data, 16));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testConvertSameAsArraysToString() throws Exception {
+        Random random = new Random(1);
+        for (int length = 0; length < 64; length++) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+            String[] expected = new String[length];
+            for (int i = 0; i < length; i++) {
+                expected[i] = String.format("%02x", data[i]);
+            }
+            assertEquals(Arrays.toString(expected), DataConversionUtils.convert(data, 16));
+            assertEquals(DataConversionUtils.convert(data, 16), DataConversionUtils.convert(ByteBuffer.wrap(data), 16));
+            assertEquals(DataConversionUtils.convert(data, 8), DataConversionUtils.convert(ByteBuffer.wrap(data), 8));
+            assertArrayEquals(data, DataConversionUtils.parse(DataConversionUtils.convert(data, 16), 16));
+        }
+    }
+
+    @Test
+    public void testToHex() throws Exception {
+        assertEquals("543d32372e3620483d39320e3600ff80", DataConversionUtils.toHex(DATA));
+        assertEquals("", DataConversionUtils.toHex(new byte[0]));
+
+        char[] chars = new char[6];
+        assertEquals(6, DataConversionUtils.encodeHex(DATA, 13, 2, chars, 2));
+        assertEquals("00ff", new String(chars, 2, 4));
+
+        assertEquals("x3d32", DataConversionUtils.appendHex(DATA, 1, 2, new StringBuilder("x")).toString());
+        assertEquals("3d32", DataConversionUtils.appendHex(DATA, 1, 2, new StringWriter()).toString());
+    }
+
+    @Test
+    public void testToHexByteBuffer() throws Exception {
+        ByteBuffer heap = ByteBuffer.wrap(DATA, 2, 4).slice();
+        ByteBuffer direct = ByteBuffer.allocateDirect(DATA.length);
+        ((Buffer) direct.put(DATA)).position(2).limit(6);
+        for (ByteBuffer buffer : new ByteBuffer[] {heap, direct}) {
+            assertEquals("32372e36", DataConversionUtils.toHex(buffer));
+            assertEquals("[32, 37, 2e, 36]", DataConversionUtils.convert(buffer, 16));
+            assertEquals(4, buffer.remaining());
+        }
+    }
+
+    @Test
+    public void testParseHex() throws Exception {
+        assertArrayEquals(DATA, DataConversionUtils.parseHex("543d32372e3620483d39320e3600ff80"));
+        assertArrayEquals(DATA, DataConversionUtils.parseHex("543D32372E3620483D39320E3600FF80"));
+        assertArrayEquals(new byte[0], DataConversionUtils.parseHex(""));
+
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        buffer.put((byte) 1);
+        DataConversionUtils.parseHex("0aff", buffer);
+        assertEquals(3, buffer.position());
+        assertArrayEquals(new byte[] {1, 0x0a, (byte) 0xff, 0}, buffer.array());
+    }
+
+    @Test
+    public void testParse() throws Exception {
+        assertArrayEquals(new byte[] {1, 5, (byte) 0xab}, DataConversionUtils.parse("[01, 05, ab]", 16));
+        assertArrayEquals(new byte[] {1, 5, (byte) 0xab}, DataConversionUtils.parse("[1,5 , AB]", 16));
+        assertArrayEquals(new byte[] {1, 5, 127}, DataConversionUtils.parse("[01, 05, 127]", 10));
+        assertArrayEquals(new byte[0], DataConversionUtils.parse("[]", 16));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testParseHexOddLength() throws Exception {
+        DataConversionUtils.parseHex("abc");
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testParseHexInvalidDigit() throws Exception {
+        DataConversionUtils.parseHex("0g");
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testParseInvalidArray() throws Exception {
+        DataConversionUtils.parse("[01, , 02]", 16);
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testParseOutOfRange() throws Exception {
+        DataConversionUtils.parse("[100]", 16);
+    }
+
+}
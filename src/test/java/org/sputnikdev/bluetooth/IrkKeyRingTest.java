@@ -0,0 +1,122 @@
+package org.sputnikdev.bluetooth;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class IrkKeyRingTest {
+
+    // Bluetooth Core Specification, Vol 3, Part H, Appendix D.7 (ah random address hash function)
+    private static final byte[] SPEC_IRK = {
+        (byte) 0xec, 0x02, 0x34, (byte) 0xa3, 0x57, (byte) 0xc8, (byte) 0xad, 0x05,
+        0x34, 0x10, 0x10, (byte) 0xa6, 0x0a, 0x39, 0x7d, (byte) 0x9b
+    };
+    private static final int SPEC_PRAND = 0x708194;
+    private static final int SPEC_HASH = 0x0dfbaa;
+    private static final long IDENTITY = 0xC27C8D66074BL;
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    public void testAh() {
+        assertEquals(SPEC_HASH, IrkKeyRing.ah(SPEC_IRK, SPEC_PRAND));
+    }
+
+    @Test
+    public void testResolve() {
+        IrkKeyRing keyRing = new IrkKeyRing();
+        assertEquals(IrkKeyRing.NOT_RESOLVED, keyRing.resolve(0x7081940DFBAAL));
+        keyRing.addKey(IDENTITY, SPEC_IRK);
+        assertEquals(1, keyRing.size());
+        assertEquals(IDENTITY, keyRing.resolve(0x7081940DFBAAL));
+        assertEquals("C2:7C:8D:66:07:4B", keyRing.resolve("70:81:94:0d:fb:aa"));
+        assertEquals(IrkKeyRing.NOT_RESOLVED, keyRing.resolve(0x7081940DFBABL));
+        assertNull(keyRing.resolve("70:81:95:0D:FB:AA"));
+
+        assertTrue(keyRing.removeKey(IDENTITY));
+        assertFalse(keyRing.removeKey(IDENTITY));
+        assertEquals(0, keyRing.size());
+        assertEquals(IrkKeyRing.NOT_RESOLVED, keyRing.resolve(0x7081940DFBAAL));
+    }
+
+    @Test
+    public void testResolveParallel() {
+        Random random = new Random(1);
+        IrkKeyRing sequential = new IrkKeyRing(1000, Integer.MAX_VALUE);
+        IrkKeyRing parallel = new IrkKeyRing(1000, 1);
+        byte[][] irks = new byte[300][16];
+        for (int i = 0; i < irks.length; i++) {
+            random.nextBytes(irks[i]);
+            sequential.addKey(i, irks[i]);
+            parallel.addKey(i, irks[i]);
+        }
+        assertEquals(irks.length, parallel.size());
+        for (int i = 0; i < irks.length; i++) {
+            int prand = 0x400000 | random.nextInt(0x400000);
+            long rpa = (long) prand << 24 | IrkKeyRing.ah(irks[i], prand);
+            assertEquals(i, sequential.resolve(rpa));
+            assertEquals(i, parallel.resolve(rpa));
+        }
+    }
+
+    @Test
+    public void testCache() {
+        IrkKeyRing keyRing = new IrkKeyRing(1000, Integer.MAX_VALUE, clock::get);
+        keyRing.addKey(IDENTITY, SPEC_IRK);
+        assertEquals(IDENTITY, keyRing.resolve(0x7081940DFBAAL));
+        assertEquals(IrkKeyRing.NOT_RESOLVED, keyRing.resolve(0x7081940DFBABL));
+        assertEquals(2, keyRing.getCacheSize());
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(999));
+        assertEquals(IDENTITY, keyRing.resolve(0x7081940DFBAAL));
+        keyRing.evictExpired();
+        assertEquals(2, keyRing.getCacheSize());
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        keyRing.evictExpired();
+        assertEquals(0, keyRing.getCacheSize());
+
+        // changing keys invalidates cached results (including negative ones)
+        assertEquals(IrkKeyRing.NOT_RESOLVED, keyRing.resolve(0x7081940DFBABL));
+        keyRing.removeKey(IDENTITY);
+        assertEquals(0, keyRing.getCacheSize());
+        assertEquals(IrkKeyRing.NOT_RESOLVED, keyRing.resolve(0x7081940DFBAAL));
+        keyRing.addKey(IDENTITY, SPEC_IRK);
+        assertEquals(IDENTITY, keyRing.resolve(0x7081940DFBAAL));
+
+        keyRing.clearCache();
+        assertEquals(0, keyRing.getCacheSize());
+    }
+
+    @Test
+    public void testCacheBounded() {
+        IrkKeyRing keyRing = new IrkKeyRing(1000, Integer.MAX_VALUE, clock::get);
+        keyRing.addKey(IDENTITY, SPEC_IRK);
+        assertEquals(IDENTITY, keyRing.resolve(0x7081940DFBAAL));
+        for (long address = 0; address < 50000; address++) {
+            assertEquals(IrkKeyRing.NOT_RESOLVED, keyRing.resolve(address));
+            if (address % 100 == 0) {
+                // addresses keep being resolved while the cache evicts least recently used ones
+                assertEquals(IDENTITY, keyRing.resolve(0x7081940DFBAAL));
+            }
+        }
+        int size = keyRing.getCacheSize();
+        assertTrue(size > 9000 && size <= 10000);
+
+        keyRing.removeKey(IDENTITY);
+        assertEquals(IrkKeyRing.NOT_RESOLVED, keyRing.resolve(0x7081940DFBAAL));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidKey() {
+        new IrkKeyRing().addKey(IDENTITY, new byte[15]);
+    }
+
+}
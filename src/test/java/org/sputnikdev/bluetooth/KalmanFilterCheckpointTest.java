@@ -0,0 +1,175 @@
+package org.sputnikdev.bluetooth;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class KalmanFilterCheckpointTest {
+
+    private static final long EPOCH_OFFSET = TimeUnit.DAYS.toNanos(20000);
+    private static final long INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("checkpoint", ".bin");
+        Files.delete(file);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void testWarmRestart() throws IOException {
+        Random random = new Random(1);
+        Map<Long, RssiKalmanFilter> filters = new HashMap<>();
+        for (int i = 0; i < 200; i++) {
+            RssiKalmanFilter filter = new RssiKalmanFilter(0.1 + i, 30);
+            for (int j = 0; j < i % 10; j++) {
+                filter.next((short) (-40 - random.nextInt(60)));
+            }
+            filters.put(random.nextLong() & 0xFFFFFFFFFFFFL, filter);
+        }
+        try (KalmanFilterCheckpoint checkpoint = KalmanFilterCheckpoint.open(file)) {
+            checkpoint.saveAll(filters);
+            assertEquals(filters.size(), checkpoint.size());
+        }
+        assertEquals(KalmanFilterCheckpoint.HEADER_SIZE + filters.size() * KalmanFilterCheckpoint.RECORD_SIZE,
+                Files.size(file));
+
+        Map<Long, RssiKalmanFilter> restored = new HashMap<>();
+        try (KalmanFilterCheckpoint checkpoint = KalmanFilterCheckpoint.open(file)) {
+            assertEquals(filters.size(), checkpoint.restoreAll(address ->
+                    restored.computeIfAbsent(address, key -> new RssiKalmanFilter())));
+        }
+        assertEquals(filters.keySet(), restored.keySet());
+        for (Map.Entry<Long, RssiKalmanFilter> entry : filters.entrySet()) {
+            RssiKalmanFilter expected = entry.getValue();
+            RssiKalmanFilter actual = restored.get(entry.getKey());
+            assertEquals(expected.getProcessNoise(), actual.getProcessNoise(), 0.0);
+            assertEquals(expected.snapshot().isInitialized(), actual.snapshot().isInitialized());
+            for (short rssi : new short[] {-40, -41, -56}) {
+                assertEquals(expected.next((double) rssi), actual.next((double) rssi), 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void testDirtyOnlyFlush() throws IOException {
+        TimedRssiKalmanFilter filter = new TimedRssiKalmanFilter();
+        filter.next(123456789L, (short) -50);
+        KalmanFilterState state = filter.snapshot();
+        try (KalmanFilterCheckpoint checkpoint = KalmanFilterCheckpoint.open(file, EPOCH_OFFSET)) {
+            for (long address = 1; address <= 100; address++) {
+                checkpoint.save(address, state);
+            }
+            assertEquals(100, checkpoint.flush());
+            assertEquals(0, checkpoint.flush());
+
+            state.setRssi(-60);
+            checkpoint.save(10, state);
+            checkpoint.save(11, state);
+            checkpoint.save(50, state);
+            assertEquals(3, checkpoint.flush());
+
+            assertTrue(checkpoint.remove(20));
+            assertFalse(checkpoint.remove(20));
+            assertEquals(1, checkpoint.flush());
+            // the freed record is reused
+            checkpoint.save(1000, state);
+            assertEquals(100, checkpoint.size());
+        }
+        assertEquals(KalmanFilterCheckpoint.HEADER_SIZE + 100 * KalmanFilterCheckpoint.RECORD_SIZE, Files.size(file));
+
+        try (KalmanFilterCheckpoint checkpoint = KalmanFilterCheckpoint.open(file, EPOCH_OFFSET)) {
+            KalmanFilterState loaded = new KalmanFilterState();
+            assertFalse(checkpoint.load(20, loaded));
+            assertTrue(checkpoint.load(1000, loaded));
+            assertEquals(-60, loaded.getRssi(), 0.0);
+            assertTrue(checkpoint.load(1, loaded));
+            assertEquals(-50, loaded.getRssi(), 0.0);
+            assertEquals(123456789L, loaded.getTimestamp());
+            assertTrue(loaded.isInitialized());
+            assertEquals(30, loaded.getMeasurementNoise(), 0.0);
+            assertTrue(checkpoint.load(50, loaded));
+            assertEquals(-60, loaded.getRssi(), 0.0);
+
+            TimedRssiKalmanFilter restored = new TimedRssiKalmanFilter();
+            restored.restore(loaded);
+            assertEquals(123456789L, restored.getLastTimestamp());
+        }
+    }
+
+    @Test
+    public void testRebaseTimestamps() throws IOException {
+        // the clock of the first run is ahead of the wall clock, the clock of the second run is negative
+        long firstOffset = EPOCH_OFFSET - TimeUnit.HOURS.toNanos(5);
+        long secondOffset = EPOCH_OFFSET + TimeUnit.HOURS.toNanos(3);
+        AtomicLong firstClock = new AtomicLong(TimeUnit.HOURS.toNanos(6));
+        TimedRssiKalmanFilter filter = new TimedRssiKalmanFilter(1.25, 30, 10, TimeUnit.SECONDS, firstClock::get);
+        for (int i = 0; i < 50; i++) {
+            firstClock.addAndGet(INTERVAL);
+            filter.next((short) -80);
+        }
+        try (KalmanFilterCheckpoint checkpoint = KalmanFilterCheckpoint.open(file, firstOffset)) {
+            checkpoint.save(1, filter.snapshot());
+        }
+        long lastReading = firstClock.get() + firstOffset;
+
+        // the application restarts and the next reading comes 2 seconds after the latest saved one
+        AtomicLong secondClock = new AtomicLong(lastReading + TimeUnit.SECONDS.toNanos(2) - secondOffset);
+        assertTrue(secondClock.get() < 0);
+        TimedRssiKalmanFilter restored =
+                new TimedRssiKalmanFilter(1.25, 30, 10, TimeUnit.SECONDS, secondClock::get);
+        try (KalmanFilterCheckpoint checkpoint = KalmanFilterCheckpoint.open(file, secondOffset)) {
+            assertEquals(1, checkpoint.restoreAll(address -> restored));
+        }
+        assertEquals(secondClock.get() - TimeUnit.SECONDS.toNanos(2), restored.getLastTimestamp());
+        firstClock.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        for (int i = 0; i < 5; i++) {
+            assertEquals(filter.next((short) -50), restored.next((short) -50));
+            assertEquals(filter.currentAsDouble(), restored.currentAsDouble(), 1e-9);
+            firstClock.addAndGet(INTERVAL);
+            secondClock.addAndGet(INTERVAL);
+        }
+        assertTrue(restored.currentAsDouble() > -70);
+
+        // a restored filter starts from scratch if the application has been down for longer than the maximum gap
+        secondClock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        TimedRssiKalmanFilter late = new TimedRssiKalmanFilter(1.25, 30, 10, TimeUnit.SECONDS, secondClock::get);
+        try (KalmanFilterCheckpoint checkpoint = KalmanFilterCheckpoint.open(file, secondOffset)) {
+            assertEquals(1, checkpoint.restoreAll(address -> late));
+        }
+        assertEquals(-50, late.next(-50.0), 0.0);
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalidFile() throws IOException {
+        Files.write(file, new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17});
+        KalmanFilterCheckpoint.open(file);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidAddress() throws IOException {
+        try (KalmanFilterCheckpoint checkpoint = KalmanFilterCheckpoint.open(file)) {
+            checkpoint.save(-1, new KalmanFilterState());
+        }
+    }
+
+}
@@ -0,0 +1,38 @@
+package org.sputnikdev.bluetooth;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PathLossModelTest {
+
+    @Test
+    public void testGetDistance() {
+        for (double exponent : new double[] {1.5, 2, 2.7, 4}) {
+            PathLossModel model = new PathLossModel(-59, exponent);
+            assertEquals(1, model.getDistance(-59), 1e-12);
+            assertEquals(10, model.getDistance(-59 - 10 * exponent), 0.03);
+            for (double rssi = -127; rssi < 127; rssi += 0.01) {
+                double expected = Math.pow(10, (-59 - rssi) / (10 * exponent));
+                double actual = model.getDistance(rssi);
+                assertTrue(rssi + ": " + expected + " vs " + actual, Math.abs(actual - expected) / expected < 0.003);
+            }
+        }
+    }
+
+    @Test
+    public void testClamping() {
+        PathLossModel model = PathLossModel.DEFAULT;
+        assertEquals(model.getDistance(-128), model.getDistance(-1000), 0.0);
+        assertEquals(model.getDistance(127), model.getDistance(1000), 0.0);
+        assertEquals(-59, model.getTxPower(), 0.0);
+        assertEquals(2, model.getExponent(), 0.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidExponent() {
+        new PathLossModel(-59, 0);
+    }
+
+}
@@ -0,0 +1,80 @@
+package org.sputnikdev.bluetooth;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class ProximityPipelineTest {
+
+    @Test
+    public void testNext() {
+        ProximityPipeline pipeline = new ProximityPipeline();
+        RssiKalmanFilter filter = new RssiKalmanFilter();
+        assertEquals(ProximityZones.NO_ZONE, pipeline.getZone());
+        assertEquals(Double.NaN, pipeline.getDistance(), 0.0);
+        int zone = ProximityZones.NO_ZONE;
+        for (short rssi : new short[] {-40, -40, -41, -40, -41, -56, -41, -40, -40}) {
+            double distance = PathLossModel.DEFAULT.getDistance(filter.next((double) rssi));
+            zone = ProximityZones.DEFAULT.classify(zone, distance);
+            assertEquals(zone, pipeline.next(rssi));
+            assertEquals(distance, pipeline.getDistance(), 0.0);
+            assertEquals(filter.currentAsDouble(), pipeline.getRssi(), 0.0);
+        }
+        assertEquals(0, pipeline.getZone());
+
+        // calibrated TX power of the device is much higher
+        pipeline.setModel(new PathLossModel(-20, 2));
+        assertEquals(2, pipeline.next((short) -40));
+        pipeline.setZones(new ProximityZones(0, 100));
+        assertEquals(ProximityZones.NO_ZONE, pipeline.getZone());
+        assertEquals(0, pipeline.next((short) -40));
+    }
+
+    @Test
+    public void testBatch() {
+        Random random = new Random(1);
+        ProximityPipeline[] devices = new ProximityPipeline[10];
+        ProximityPipeline[] expected = new ProximityPipeline[devices.length];
+        for (int i = 0; i < devices.length; i++) {
+            PathLossModel model = new PathLossModel(-50 - i, 2 + i * 0.1);
+            devices[i] = new ProximityPipeline(new RssiKalmanFilter(), model, ProximityZones.DEFAULT);
+            expected[i] = new ProximityPipeline(new RssiKalmanFilter(), model, ProximityZones.DEFAULT);
+        }
+        ProximityPipeline[] pipelines = new ProximityPipeline[128];
+        short[] readings = new short[pipelines.length];
+        double[] distances = new double[pipelines.length];
+        int[] zones = new int[pipelines.length];
+        for (int batch = 0; batch < 50; batch++) {
+            for (int i = 0; i < pipelines.length; i++) {
+                int device = random.nextInt(devices.length);
+                pipelines[i] = devices[device];
+                readings[i] = (short) (-40 - random.nextInt(60));
+            }
+            ProximityPipeline.next(pipelines, readings, pipelines.length, distances, zones);
+            for (int i = 0; i < pipelines.length; i++) {
+                ProximityPipeline pipeline = expected[indexOf(devices, pipelines[i])];
+                assertEquals(pipeline.next(readings[i]), zones[i]);
+                assertEquals(pipeline.getDistance(), distances[i], 0.0);
+            }
+        }
+        ProximityPipeline.next(pipelines, readings, 1, null, null);
+        assertEquals(expected[indexOf(devices, pipelines[0])].next(readings[0]), pipelines[0].getZone());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidStage() {
+        new ProximityPipeline(new RssiKalmanFilter(), null, ProximityZones.DEFAULT);
+    }
+
+    private static int indexOf(ProximityPipeline[] devices, ProximityPipeline pipeline) {
+        for (int i = 0; i < devices.length; i++) {
+            if (devices[i] == pipeline) {
+                return i;
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+}
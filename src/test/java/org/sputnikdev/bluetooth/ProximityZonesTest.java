@@ -0,0 +1,52 @@
+package org.sputnikdev.bluetooth;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ProximityZonesTest {
+
+    private final ProximityZones zones = new ProximityZones(0.5, 1, 3, 10);
+
+    @Test
+    public void testClassifyNoZone() {
+        assertEquals(0, zones.classify(ProximityZones.NO_ZONE, 0.9));
+        assertEquals(1, zones.classify(ProximityZones.NO_ZONE, 1));
+        assertEquals(2, zones.classify(ProximityZones.NO_ZONE, 9.9));
+        assertEquals(3, zones.classify(ProximityZones.NO_ZONE, 100));
+        assertEquals(ProximityZones.NO_ZONE, zones.classify(2, Double.NaN));
+        assertEquals(4, zones.getZoneCount());
+    }
+
+    @Test
+    public void testHysteresis() {
+        int zone = zones.classify(ProximityZones.NO_ZONE, 2);
+        assertEquals(1, zone);
+        // flapping around the 3 m boundary does not change the zone
+        for (double distance : new double[] {2.9, 3.1, 3.49, 2.6, 3.3}) {
+            zone = zones.classify(zone, distance);
+            assertEquals(1, zone);
+        }
+        zone = zones.classify(zone, 3.5);
+        assertEquals(2, zone);
+        assertEquals(2, zones.classify(zone, 2.6));
+        assertEquals(1, zones.classify(zone, 2.49));
+        // big jumps cross many zones at once
+        assertEquals(0, zones.classify(3, 0.1));
+        assertEquals(3, zones.classify(0, 50));
+    }
+
+    @Test
+    public void testGetters() {
+        assertEquals(0.5, zones.getHysteresis(), 0.0);
+        assertArrayEquals(new double[] {1, 3, 10}, zones.getBoundaries(), 0.0);
+        assertEquals(3, ProximityZones.DEFAULT.getZoneCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidBoundaries() {
+        new ProximityZones(0, 1, 1);
+    }
+
+}
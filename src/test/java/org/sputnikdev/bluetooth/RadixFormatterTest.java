@@ -0,0 +1,75 @@
+package org.sputnikdev.bluetooth;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class RadixFormatterTest {
+
+    @Test
+    public void testSameAsConvert() throws Exception {
+        RadixFormatter formatter = new RadixFormatter(16);
+        Random random = new Random(1);
+        // large enough to span multiple chunks
+        for (int length : new int[] {0, 1, 2, 1023, 1024, 1025, 100000}) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+            assertEquals(DataConversionUtils.convert(data, 16), formatter.format(data));
+        }
+    }
+
+    @Test
+    public void testRadix() throws Exception {
+        byte[] data = {0, 1, 5, 127, (byte) 0x80, (byte) 0xff};
+        assertEquals("[00000000, 00000001, 00000101, 01111111, 10000000, 11111111]",
+                new RadixFormatter(2).format(data));
+        assertEquals("[000, 001, 005, 127, 128, 255]", new RadixFormatter(10).format(data));
+        assertEquals("[00, 01, 05, 3j, 3k, 73]", new RadixFormatter(36).format(data));
+    }
+
+    @Test
+    public void testTruncation() throws Exception {
+        byte[] data = new byte[100];
+        assertEquals("[00, 00, ... 98 more bytes]", new RadixFormatter(16, 2).format(data));
+        assertEquals("[... 100 more bytes]", new RadixFormatter(16, 0).format(data));
+        assertEquals("[00, 00]", new RadixFormatter(16, 2).format(new byte[2]));
+    }
+
+    @Test
+    public void testStreams() throws Exception {
+        byte[] data = new byte[5000];
+        new Random(2).nextBytes(data);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(data.length + 10);
+        ((Buffer) buffer.put(new byte[10]).put(data)).position(10);
+        RadixFormatter formatter = new RadixFormatter(10, 4000);
+        String expected = formatter.format(data);
+
+        StringWriter writer = new StringWriter();
+        formatter.format(buffer, writer);
+        assertEquals(expected, writer.toString());
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        formatter.format(buffer, stream);
+        assertEquals(expected, new String(stream.toByteArray(), StandardCharsets.US_ASCII));
+
+        stream.reset();
+        formatter.format(buffer, Channels.newChannel(stream));
+        assertEquals(expected, new String(stream.toByteArray(), StandardCharsets.US_ASCII));
+
+        assertEquals(10, buffer.position());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRadix() {
+        new RadixFormatter(1);
+    }
+
+}
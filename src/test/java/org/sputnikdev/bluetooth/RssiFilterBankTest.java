@@ -0,0 +1,115 @@
+package org.sputnikdev.bluetooth;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RssiFilterBankTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final RssiFilterBank bank = new RssiFilterBank(2, 0.125, 30, clock::get);
+
+    @Test
+    public void testSameAsKalmanFilter() {
+        Random random = new Random(1);
+        Map<Long, RssiKalmanFilter> filters = new HashMap<>();
+        long[] addresses = new long[100];
+        for (int i = 0; i < addresses.length; i++) {
+            addresses[i] = random.nextLong() & 0xFFFFFFFFFFFFL;
+            filters.put(addresses[i], new RssiKalmanFilter());
+        }
+        int[] slots = new int[256];
+        short[] readings = new short[256];
+        for (int batch = 0; batch < 100; batch++) {
+            for (int i = 0; i < slots.length; i++) {
+                long address = addresses[random.nextInt(addresses.length)];
+                slots[i] = bank.acquire(address);
+                readings[i] = (short) (-40 - random.nextInt(60));
+                filters.get(address).next(readings[i]);
+            }
+            bank.update(slots, readings);
+        }
+        for (long address : addresses) {
+            int slot = bank.find(address);
+            RssiKalmanFilter filter = filters.get(address);
+            assertEquals(filter.currentAsDouble(), bank.current(slot), 0.0);
+            assertEquals(address, bank.getAddress(slot));
+        }
+        assertEquals(addresses.length, bank.size());
+    }
+
+    @Test
+    public void testSingleUpdate() {
+        RssiKalmanFilter filter = new RssiKalmanFilter(0.5, 10);
+        int slot = bank.acquire(0x546009958601L);
+        bank.setNoise(slot, 0.5, 10);
+        assertEquals(0, bank.current(slot), 0.0);
+        for (short rssi : new short[] {-40, -40, -41, -40, -41, -56, -41, -40, -40}) {
+            assertEquals(filter.next((double) rssi), bank.update(slot, rssi), 0.0);
+        }
+    }
+
+    @Test
+    public void testReleaseAndEvict() {
+        int first = bank.acquire(1);
+        int second = bank.acquire(2);
+        assertTrue(first != second);
+        assertEquals(first, bank.acquire(1));
+        assertEquals(2, bank.size());
+
+        bank.release(first);
+        assertEquals(RssiFilterBank.NO_SLOT, bank.find(1));
+        assertEquals(second, bank.find(2));
+        assertEquals(1, bank.size());
+        // released slot is reused and reset
+        assertEquals(first, bank.acquire(3));
+        assertEquals(0, bank.current(first), 0.0);
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        bank.update(second, (short) -50);
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        assertEquals(1, bank.evictStale(15, TimeUnit.SECONDS));
+        assertEquals(RssiFilterBank.NO_SLOT, bank.find(3));
+        assertEquals(second, bank.find(2));
+        assertEquals(1, bank.evictStale(5, TimeUnit.SECONDS));
+        assertEquals(0, bank.size());
+    }
+
+    @Test
+    public void testIndexConsistency() {
+        Random random = new Random(2);
+        Map<Long, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            // small key space to get plenty of collisions and removals
+            long address = random.nextInt(512);
+            if (random.nextBoolean()) {
+                int slot = bank.acquire(address);
+                Integer previous = expected.put(address, slot);
+                if (previous != null) {
+                    assertEquals(previous.intValue(), slot);
+                }
+            } else {
+                int slot = bank.find(address);
+                assertEquals(expected.getOrDefault(address, RssiFilterBank.NO_SLOT).intValue(), slot);
+                if (slot != RssiFilterBank.NO_SLOT) {
+                    bank.release(slot);
+                    expected.remove(address);
+                }
+            }
+        }
+        assertEquals(expected.size(), bank.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidAddress() {
+        bank.acquire(-1);
+    }
+
+}
@@ -19,6 +19,20 @@ public class RssiKalmanFilterTest {
         assertEquals(-40, (short) filter.current());
     }
 
+    @Test
+    public void testPrimitiveNext() throws Exception {
+        RssiKalmanFilter primitive = new RssiKalmanFilter();
+        RssiKalmanFilter precise = new RssiKalmanFilter();
+        for (short rssi : READINGS) {
+            short expected = filter.next(Short.valueOf(rssi));
+            assertEquals(expected, primitive.next(rssi));
+            assertEquals(expected, (short) precise.next((double) rssi));
+        }
+        assertEquals(filter.current().shortValue(), primitive.currentAsShort());
+        assertEquals(primitive.currentAsDouble(), precise.currentAsDouble(), 0.0);
+        assertEquals(-40.5, precise.currentAsDouble(), 0.5);
+    }
+
     @Test
     public void testGetSetProcessNoise() throws Exception {
         filter.setProcessNoise(0.5);
@@ -38,4 +52,55 @@ public class RssiKalmanFilterTest {
         assertEquals(30.0, filter.getMeasurementNoise(), 0.0);
     }
 
+    @Test
+    public void testConvergedZero() {
+        // zero is a valid estimate, it does not restart the filter
+        assertEquals(0, filter.next(0.0), 0.0);
+        double estimate = filter.next(10.0);
+        assertTrue(estimate > 0 && estimate < 1);
+    }
+
+    @Test
+    public void testResetSnapshotRestore() {
+        for (short rssi : READINGS) {
+            filter.next(rssi);
+        }
+        KalmanFilterState state = filter.snapshot();
+        assertTrue(state.isInitialized());
+        assertEquals(filter.currentAsDouble(), state.getRssi(), 0.0);
+
+        RssiKalmanFilter copy = new RssiKalmanFilter(1, 1);
+        copy.copyFrom(filter);
+        RssiKalmanFilter restored = new RssiKalmanFilter();
+        restored.restore(state);
+        for (short rssi : READINGS) {
+            double expected = filter.next((double) rssi);
+            assertEquals(expected, copy.next((double) rssi), 0.0);
+            assertEquals(expected, restored.next((double) rssi), 0.0);
+        }
+        assertEquals(filter.getProcessNoise(), copy.getProcessNoise(), 0.0);
+
+        filter.reset();
+        assertFalse(filter.snapshot(state).isInitialized());
+        assertEquals(0, filter.currentAsShort());
+        assertEquals(-56, filter.next((short) -56));
+        assertEquals(30, state.getMeasurementNoise(), 0.0);
+    }
+
+    @Test
+    public void testSnapshotIntoReusedState() {
+        TimedRssiKalmanFilter timed = new TimedRssiKalmanFilter();
+        timed.next(123456789L, (short) -40);
+        KalmanFilterState state = timed.snapshot();
+        assertEquals(123456789L, state.getTimestamp());
+
+        filter.next((short) -50);
+        assertSame(state, filter.snapshot(state));
+        assertEquals(0, state.getTimestamp());
+
+        timed.snapshot(state);
+        new ConcurrentRssiKalmanFilter().snapshot(state);
+        assertEquals(0, state.getTimestamp());
+    }
+
 }
\ No newline at end of file
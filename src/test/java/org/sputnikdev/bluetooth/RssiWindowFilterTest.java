@@ -0,0 +1,165 @@
+package org.sputnikdev.bluetooth;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+
+public class RssiWindowFilterTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    public void testSameAsNaive() {
+        Random random = new Random(1);
+        for (int size : new int[] {1, 2, 3, 5, 64}) {
+            RssiWindowFilter filter = new RssiWindowFilter(size, RssiWindowFilter.Statistic.MEDIAN);
+            short[] readings = new short[2000];
+            for (int i = 0; i < readings.length; i++) {
+                // narrow range to get plenty of duplicates
+                readings[i] = (short) (-60 - random.nextInt(i % 300 < 150 ? 5 : 40));
+                filter.next(readings[i]);
+                short[] window = Arrays.copyOfRange(readings, Math.max(0, i + 1 - size), i + 1);
+                assertWindow(window, filter);
+                assertEquals((short) median(window), filter.currentAsShort());
+            }
+        }
+    }
+
+    @Test
+    public void testStatistics() {
+        RssiWindowFilter mean = new RssiWindowFilter(4);
+        RssiWindowFilter min = new RssiWindowFilter(4, RssiWindowFilter.Statistic.MIN);
+        RssiWindowFilter max = new RssiWindowFilter(4, RssiWindowFilter.Statistic.MAX);
+        assertEquals(0, (short) mean.current());
+        assertEquals(0, mean.getMedian(), 0.0);
+        assertEquals(0, mean.getPercentile(90), 0.0);
+        for (short rssi : new short[] {-40, -41, -56, -41, -40, -42}) {
+            mean.next(Short.valueOf(rssi));
+            min.next(rssi);
+            max.next(rssi);
+        }
+        // window: -56, -41, -40, -42
+        assertEquals(-44.75, mean.currentAsDouble(), 0.0);
+        // truncated towards zero, the same as the other filters
+        assertEquals(-44, (short) mean.current());
+        assertEquals(-56, min.currentAsShort());
+        assertEquals(-40, max.currentAsShort());
+        assertEquals(-41.5, mean.getMedian(), 0.0);
+        assertEquals(-56, mean.getPercentile(0), 0.0);
+        assertEquals(-40, mean.getPercentile(100), 0.0);
+        assertEquals(-40.3, mean.getPercentile(90), 1e-9);
+        assertEquals(42.6875, mean.getVariance(), 1e-9);
+        assertEquals(RssiWindowFilter.Statistic.MEAN, mean.getStatistic());
+    }
+
+    @Test
+    public void testPercentilesSameAsNaive() {
+        Random random = new Random(2);
+        RssiWindowFilter filter = new RssiWindowFilter(50);
+        short[] readings = new short[1000];
+        for (int i = 0; i < readings.length; i++) {
+            // readings out of the RSSI range come in bursts, so that the window has none of them at times
+            boolean outOfRange = i % 200 < 20 && random.nextInt(4) == 0;
+            readings[i] = (short) (outOfRange ? -200 + random.nextInt(400) : -128 + random.nextInt(256));
+            filter.next(readings[i]);
+            short[] sorted = Arrays.copyOfRange(readings, Math.max(0, i + 1 - 50), i + 1);
+            Arrays.sort(sorted);
+            for (double percentile : new double[] {0, 1, 10, 25, 33.3, 50, 75, 90, 99, 100}) {
+                double rank = percentile / 100 * (sorted.length - 1);
+                int index = (int) rank;
+                double expected = index + 1 < sorted.length
+                        ? sorted[index] + (rank - index) * (sorted[index + 1] - sorted[index]) : sorted[index];
+                assertEquals(expected, filter.getPercentile(percentile), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void testTimeBoundedWindow() {
+        RssiWindowFilter filter = new RssiWindowFilter(8, TimeUnit.SECONDS.toNanos(10),
+                RssiWindowFilter.Statistic.MEAN, clock::get);
+        filter.next((short) -40);
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        filter.next((short) -50);
+        assertEquals(-45, filter.currentAsDouble(), 0.0);
+        assertEquals(0, filter.evictExpired());
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        assertEquals(-60, filter.next((short) -70));
+        assertEquals(2, filter.size());
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(6));
+        assertEquals(1, filter.evictExpired());
+        assertEquals(-70, filter.currentAsShort());
+        assertEquals(-70, filter.getMin());
+        assertEquals(-70, filter.getMedian(), 0.0);
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        assertEquals(1, filter.evictExpired());
+        assertEquals(0, filter.size());
+        assertEquals(0, filter.currentAsDouble(), 0.0);
+        assertEquals(0, filter.getMax());
+        assertEquals(-30, filter.next((short) -30));
+    }
+
+    @Test
+    public void testReset() {
+        RssiWindowFilter filter = new RssiWindowFilter(3, RssiWindowFilter.Statistic.MEDIAN);
+        for (short rssi : new short[] {-40, -50, -60, -70}) {
+            filter.next(rssi);
+        }
+        filter.reset();
+        assertEquals(0, filter.size());
+        assertEquals(0, filter.currentAsDouble(), 0.0);
+        assertEquals(-45, filter.next((short) -45));
+        assertEquals(-55, filter.next((short) -65));
+        assertEquals(-65, filter.getMin());
+        assertEquals(-45, filter.getMax());
+        assertWindow(new short[] {-45, -65}, filter);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSize() {
+        new RssiWindowFilter(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPercentile() {
+        new RssiWindowFilter(1).getPercentile(101);
+    }
+
+    private static void assertWindow(short[] window, RssiWindowFilter filter) {
+        double mean = 0;
+        for (short value : window) {
+            mean += value;
+        }
+        mean /= window.length;
+        double variance = 0;
+        for (short value : window) {
+            variance += (value - mean) * (value - mean);
+        }
+        variance /= window.length;
+        short[] sorted = window.clone();
+        Arrays.sort(sorted);
+        assertEquals(window.length, filter.size());
+        assertEquals(mean, filter.getMean(), 1e-9);
+        assertEquals(variance, filter.getVariance(), 1e-6);
+        assertEquals(sorted[0], filter.getMin());
+        assertEquals(sorted[sorted.length - 1], filter.getMax());
+        assertEquals(median(window), filter.getMedian(), 0.0);
+        assertEquals(median(window), filter.getPercentile(50), 1e-9);
+    }
+
+    private static double median(short[] window) {
+        short[] sorted = window.clone();
+        Arrays.sort(sorted);
+        int middle = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2.0;
+    }
+
+}
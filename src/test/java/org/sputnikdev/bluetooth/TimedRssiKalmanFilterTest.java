@@ -0,0 +1,162 @@
+package org.sputnikdev.bluetooth;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TimedRssiKalmanFilterTest {
+
+    private static final short[] READINGS = {-40, -40, -41, -40, -41, -56, -41, -40, -40};
+    private static final long INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final AtomicLong clock = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+    private final TimedRssiKalmanFilter filter = new TimedRssiKalmanFilter(1.25, 30, 10, TimeUnit.SECONDS, clock::get);
+
+    @Test
+    public void testSameAsKalmanFilterForRegularIntervals() {
+        RssiKalmanFilter expected = new RssiKalmanFilter();
+        for (short rssi : READINGS) {
+            assertEquals(expected.next(Short.valueOf(rssi)), filter.next(Short.valueOf(rssi)));
+            assertEquals(expected.currentAsDouble(), filter.currentAsDouble(), 1e-12);
+            clock.addAndGet(INTERVAL);
+        }
+        assertEquals(expected.current(), filter.current());
+        assertEquals(expected.currentAsShort(), filter.currentAsShort());
+    }
+
+    @Test
+    public void testBurstAndGap() {
+        long now = 0;
+        for (int i = 0; i < 50; i++) {
+            now += INTERVAL;
+            filter.next(now, (short) -60);
+        }
+        // a burst of readings at the same time hardly moves the estimate
+        TimedRssiKalmanFilter burst = copy(now);
+        for (int i = 0; i < 5; i++) {
+            burst.next(now, (short) -80);
+        }
+        // whereas the same number of readings after a gap moves it much further
+        TimedRssiKalmanFilter gap = copy(now);
+        for (int i = 0; i < 5; i++) {
+            gap.next(now + TimeUnit.SECONDS.toNanos(5) + i * INTERVAL, (short) -80);
+        }
+        assertTrue(burst.currentAsDouble() + " vs " + gap.currentAsDouble(),
+                burst.currentAsDouble() - gap.currentAsDouble() > 5);
+
+        // the filter starts from scratch after the maximum gap
+        now += TimeUnit.SECONDS.toNanos(10);
+        assertEquals(-80, filter.next(now, -80.0), 0.0);
+        assertEquals(now, filter.getLastTimestamp());
+
+        // out of order readings do not add process noise
+        double before = filter.next(now, (short) -80);
+        assertEquals(before, filter.next(now - INTERVAL, -80.0), 0.0);
+        assertEquals(now, filter.getLastTimestamp());
+    }
+
+    @Test
+    public void testLatePacket() {
+        TimedRssiKalmanFilter expected = new TimedRssiKalmanFilter(1.25, 30, 10, TimeUnit.SECONDS, clock::get);
+        long now = 0;
+        for (int i = 0; i < 10; i++) {
+            now += INTERVAL;
+            filter.next(now, (short) -60);
+            expected.next(now, (short) -60);
+        }
+        // a packet that comes late is applied as if it came at the time of the latest reading
+        assertEquals(expected.next(now, -70.0), filter.next(now - INTERVAL, -70.0), 1e-12);
+        assertEquals(now, filter.getLastTimestamp());
+        // so that the next reading adds the process noise of one interval rather than two
+        assertEquals(expected.next(now + INTERVAL, -60.0), filter.next(now + INTERVAL, -60.0), 1e-12);
+        assertEquals(now + INTERVAL, filter.getLastTimestamp());
+    }
+
+    @Test
+    public void testClockStepsBack() {
+        TimedRssiKalmanFilter expected = new TimedRssiKalmanFilter(1.25, 30, 10, TimeUnit.SECONDS, clock::get);
+        long now = 0;
+        for (int i = 0; i < 50; i++) {
+            now += INTERVAL;
+            filter.next(now, (short) -80);
+            expected.next(now, (short) -80);
+        }
+        // the filter carries on from the reading that is timed 5 seconds back, the same way as if it came in time
+        long back = now - TimeUnit.SECONDS.toNanos(5);
+        for (int i = 0; i < 20; i++) {
+            assertEquals(expected.next(now + i * INTERVAL, -50.0), filter.next(back + i * INTERVAL, -50.0), 1e-12);
+        }
+        assertTrue(filter.currentAsDouble() > -60);
+
+        // a step back longer than the maximum gap starts the filter from scratch
+        back = filter.getLastTimestamp() - TimeUnit.SECONDS.toNanos(10);
+        assertEquals(-70, filter.next(back, -70.0), 0.0);
+        assertEquals(back, filter.getLastTimestamp());
+    }
+
+    @Test
+    public void testNegativeTimestamps() {
+        // System.nanoTime() can be negative, the first reading is not special in any way
+        TimedRssiKalmanFilter positive = new TimedRssiKalmanFilter(1.25, 30, 10, TimeUnit.SECONDS, clock::get);
+        long negative = -TimeUnit.DAYS.toNanos(1);
+        for (int i = 0; i < READINGS.length; i++) {
+            assertEquals(positive.next(i * INTERVAL, (double) READINGS[i]),
+                    filter.next(negative + i * INTERVAL, (double) READINGS[i]), 1e-12);
+        }
+        assertEquals(negative + (READINGS.length - 1) * INTERVAL, filter.getLastTimestamp());
+    }
+
+    @Test
+    public void testGettersAndSetters() {
+        filter.setProcessNoise(0.5);
+        filter.setMeasurementNoise(20);
+        filter.setMaxGap(3, TimeUnit.SECONDS);
+        assertEquals(0.5, filter.getProcessNoise(), 0.0);
+        assertEquals(20, filter.getMeasurementNoise(), 0.0);
+        assertEquals(3000, filter.getMaxGap(TimeUnit.MILLISECONDS));
+        assertEquals(10, new TimedRssiKalmanFilter().getMaxGap(TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testResetSnapshotRestore() {
+        long now = -TimeUnit.HOURS.toNanos(1);
+        for (short rssi : READINGS) {
+            filter.next(now, rssi);
+            now += INTERVAL;
+        }
+        KalmanFilterState state = filter.snapshot();
+        assertEquals(now - INTERVAL, state.getTimestamp());
+        TimedRssiKalmanFilter copy = new TimedRssiKalmanFilter();
+        copy.copyFrom(filter);
+        TimedRssiKalmanFilter restored = new TimedRssiKalmanFilter();
+        restored.restore(state);
+        for (short rssi : READINGS) {
+            double expected = filter.next(now, (double) rssi);
+            assertEquals(expected, copy.next(now, (double) rssi), 0.0);
+            assertEquals(expected, restored.next(now, (double) rssi), 0.0);
+            now += INTERVAL;
+        }
+        assertEquals(10, copy.getMaxGap(TimeUnit.SECONDS));
+
+        filter.reset();
+        assertEquals(0, filter.getLastTimestamp());
+        assertEquals(-56, filter.next(now, (short) -56));
+        assertEquals(now, filter.getLastTimestamp());
+    }
+
+    private TimedRssiKalmanFilter copy(long now) {
+        TimedRssiKalmanFilter copy = new TimedRssiKalmanFilter(1.25, 30, 10, TimeUnit.SECONDS, clock::get);
+        long time = now - 50 * INTERVAL;
+        for (int i = 0; i < 50; i++) {
+            time += INTERVAL;
+            copy.next(time, (short) -60);
+        }
+        assertEquals(filter.currentAsDouble(), copy.currentAsDouble(), 0.0);
+        return copy;
+    }
+
+}
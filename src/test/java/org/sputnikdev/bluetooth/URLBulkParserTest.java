@@ -0,0 +1,124 @@
+package org.sputnikdev.bluetooth;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class URLBulkParserTest {
+
+    @Test
+    public void testParse() throws Exception {
+        List<String> lines = lines(100000);
+        URLBulkParser.Result result = new URLBulkParser().parse(lines.stream());
+        assertResult(lines, result);
+        assertTrue(result.hasErrors());
+
+        result = new URLBulkParser().parse(new StringReader(String.join("\r\n", lines)));
+        assertResult(lines, result);
+
+        File file = File.createTempFile("urls", ".txt");
+        try {
+            Files.write(file.toPath(), (String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8));
+            result = new URLBulkParser().parse(file.toPath());
+            assertResult(lines, result);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testLineBreaks() throws Exception {
+        List<String> lines = lines(100000);
+        StringBuilder text = new StringBuilder();
+        String[] breaks = {"\n", "\r", "\r\n"};
+        for (int i = 0; i < lines.size(); i++) {
+            text.append(lines.get(i)).append(breaks[i % breaks.length]);
+        }
+        URLBulkParser.Result result = new URLBulkParser().parse(new StringReader(text.toString()));
+        assertResult(lines, result);
+
+        File file = File.createTempFile("urls", ".txt");
+        try {
+            Files.write(file.toPath(), text.toString().getBytes(StandardCharsets.UTF_8));
+            result = new URLBulkParser().parse(file.toPath());
+            assertResult(lines, result);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testDeduplicateAndIntern() throws Exception {
+        URLInterner interner = new URLInterner();
+        URL device = interner.intern("/54:60:09:95:86:01/11:22:33:44:55:66");
+        URLBulkParser.Result result = new URLBulkParser(true, interner).parse(Stream.of(
+                "/54:60:09:95:86:01/11:22:33:44:55:66/180f",
+                "/54:60:09:95:86:01/11:22:33:44:55:66",
+                "/54:60:09:95:86:01/11:22:33:44:55:66/180F",
+                "/54:60:09:95:86:01/11:22:33:44:55:66/180f/2a19"));
+        assertFalse(result.hasErrors());
+        assertEquals(Arrays.asList(new URL("/54:60:09:95:86:01/11:22:33:44:55:66/180f"), device,
+                new URL("/54:60:09:95:86:01/11:22:33:44:55:66/180f/2a19")), result.getURLs());
+        assertSame(device, result.getURLs().get(1));
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        URLBulkParser.Result result = new URLBulkParser().parse(Stream.empty());
+        assertTrue(result.getURLs().isEmpty());
+        assertFalse(result.hasErrors());
+    }
+
+    private static void assertResult(List<String> lines, URLBulkParser.Result result) {
+        List<URL> expected = new ArrayList<>();
+        List<Integer> errors = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            if (lines.get(i).isEmpty()) {
+                continue;
+            }
+            try {
+                expected.add(new URL(lines.get(i)));
+            } catch (IllegalArgumentException ex) {
+                errors.add(i + 1);
+            }
+        }
+        assertEquals(expected, result.getURLs());
+        assertEquals(errors.size(), result.getErrors().size());
+        for (int i = 0; i < errors.size(); i++) {
+            URLBulkParser.ParseError error = result.getErrors().get(i);
+            assertEquals(errors.get(i).intValue(), error.getLine());
+            assertEquals(lines.get(error.getLine() - 1), error.getText());
+            assertTrue(error.getMessage().startsWith("Invalid URL"));
+        }
+    }
+
+    private static List<String> lines(int count) {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String device = String.format("/54:60:09:95:86:01/11:22:33:44:%02X:%02X", i >> 8 & 0xFF, i & 0xFF);
+            switch (i % 7) {
+                case 0: lines.add(device); break;
+                case 1: lines.add(device + "/180f/2a19/Level"); break;
+                case 2: lines.add("tinyb:" + device + "/0000180f-0000-1000-8000-00805f9b34fb"); break;
+                case 3: lines.add(""); break;
+                case 4: lines.add(device + "/invalid uuid"); break;
+                case 5: lines.add("//[name=Sensor " + i + "]"); break;
+                default: lines.add("garbage " + i);
+            }
+        }
+        return lines;
+    }
+
+}
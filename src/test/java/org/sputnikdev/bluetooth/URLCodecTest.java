@@ -0,0 +1,131 @@
+package org.sputnikdev.bluetooth;
+
+import org.junit.Test;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class URLCodecTest {
+
+    private static final String[] PROTOCOLS = {null, "tinyb", "dbus", "bluegiga"};
+    private static final String[] NAMES = {"Level", "Power", "Humidity", "Temperature Ñ", "x"};
+
+    @Test
+    public void testCompact() {
+        URL url = new URL("/B8:27:EB:60:0C:43/54:60:09:95:86:01/0000180f-0000-1000-8000-00805f9b34fb/"
+                + "00002a19-0000-1000-8000-00805f9b34fb/Level");
+        byte[] encoded = URLCodec.encode(url);
+        // header (2), addresses (6 + 6), UUIDs (2 + 2), field (1 + 5)
+        assertEquals(24, encoded.length);
+        assertEquals(url, URLCodec.decode(encoded));
+        assertEquals(url.toString(), URLCodec.decode(encoded).toString());
+
+        assertEquals(2, URLCodec.encode(URL.ROOT).length);
+        assertEquals(URL.ROOT, URLCodec.decode(URLCodec.encode(URL.ROOT)));
+    }
+
+    @Test
+    public void testRoundTrip() {
+        Random random = new Random(1);
+        ByteBuffer buffer = ByteBuffer.allocate(1024 * 1024);
+        URL[] urls = new URL[10000];
+        for (int i = 0; i < urls.length; i++) {
+            urls[i] = randomURL(random);
+            byte[] encoded = URLCodec.encode(urls[i]);
+            URL decoded = URLCodec.decode(encoded);
+            assertEquals(urls[i], decoded);
+            assertEquals(urls[i].toString(), decoded.toString());
+            assertTrue(urls[i].toString(), encoded.length <= urls[i].toString().getBytes(StandardCharsets.UTF_8).length + 2);
+            URLCodec.encode(urls[i], buffer);
+        }
+        ((Buffer) buffer).flip();
+        for (URL url : urls) {
+            assertEquals(url, URLCodec.decode(buffer));
+        }
+        assertEquals(0, buffer.remaining());
+    }
+
+    @Test
+    public void testRoundTripTextForm() {
+        Random random = new Random(2);
+        int parsed = 0;
+        for (int i = 0; i < 10000; i++) {
+            String text = randomURL(random).toString();
+            URL url;
+            try {
+                url = new URL(text);
+            } catch (IllegalArgumentException ex) {
+                // not all random URLs have a valid text form, e.g. non-standard addresses
+                continue;
+            }
+            assertEquals(text, URLCodec.decode(URLCodec.encode(url)).toString());
+            parsed++;
+        }
+        assertTrue(parsed > 1000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidHeader() {
+        URLCodec.decode(new byte[] {(byte) 0x80, 0});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidUUIDForm() {
+        URLCodec.decode(new byte[] {0x02, 0x0F, 1, 2, 3, 4, 5, 6});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeStringLength() {
+        // protocol of length -1
+        URLCodec.decode(new byte[] {0x01, 0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F, 0, 0, 0});
+    }
+
+    private static URL randomURL(Random random) {
+        String protocol = PROTOCOLS[random.nextInt(PROTOCOLS.length)];
+        int depth = random.nextInt(6);
+        String adapter = depth > 0 ? randomAddress(random) : null;
+        String device = depth > 1 && random.nextInt(4) > 0 ? randomAddress(random) : null;
+        Map<String, String> attributes = Collections.emptyMap();
+        if (depth > 1 && (device == null || random.nextInt(4) == 0)) {
+            attributes = new HashMap<>();
+            attributes.put("name", NAMES[random.nextInt(NAMES.length)]);
+            if (random.nextBoolean()) {
+                attributes.put("type", NAMES[random.nextInt(NAMES.length)]);
+            }
+        }
+        String service = depth > 2 ? randomUUID(random) : null;
+        String characteristic = depth > 3 ? randomUUID(random) : null;
+        String field = depth > 4 ? NAMES[random.nextInt(NAMES.length)] : null;
+        return new URL(protocol, adapter, device, attributes, service, characteristic, field);
+    }
+
+    private static String randomAddress(Random random) {
+        if (random.nextInt(20) == 0) {
+            // not a standard address
+            return "hci" + random.nextInt(4);
+        }
+        return AddressUtils.formatAddress(random.nextLong() & 0xFFFFFFFFFFFFL);
+    }
+
+    private static String randomUUID(Random random) {
+        switch (random.nextInt(7)) {
+            case 0: return String.format("%04x", random.nextInt(0x10000));
+            case 1: return String.format("%08x", random.nextInt());
+            case 2: return String.format("0000%04x-0000-1000-8000-00805f9b34fb", random.nextInt(0x10000));
+            case 3: return String.format("%08x-0000-1000-8000-00805f9b34fb", random.nextInt());
+            case 4: return new UUID(random.nextLong(), random.nextLong()).toString();
+            case 5: return "0000180F-0000-1000-8000-00805F9B34FB";
+            default: return "2a" + random.nextInt(10);
+        }
+    }
+
+}
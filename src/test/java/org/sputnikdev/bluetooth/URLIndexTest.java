@@ -0,0 +1,149 @@
+package org.sputnikdev.bluetooth;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class URLIndexTest {
+
+    private static final String[] PROTOCOLS = {null, "tinyb", "dbus"};
+    private static final String[] ADDRESSES = {"54:60:09:95:86:01", "54:60:09:95:86:02"};
+    private static final String[] UUIDS = {"180f", "180a"};
+    private static final String[] FIELDS = {"Level", "Power"};
+
+    private final URLIndex<URL> index = new URLIndex<>();
+
+    @Test
+    public void testPutGetRemove() {
+        URL url = new URL("tinyb:/54:60:09:95:86:01/11:22:33:44:55:66/180f/2a19/Level");
+        assertNull(index.put(url, url));
+        assertEquals(url, index.put(url, url));
+        assertEquals(url, index.get(new URL("tinyb:/54:60:09:95:86:01/11:22:33:44:55:66/180f/2a19/level")));
+        assertNull(index.get(url.copyWithProtocol(null)));
+        assertNull(index.get(url.getParent()));
+        assertEquals(1, index.size());
+
+        assertNull(index.remove(url.getParent()));
+        assertEquals(url, index.remove(url));
+        assertNull(index.get(url));
+        assertEquals(0, index.size());
+        assertEquals(0, index.getDescendants(URL.ROOT, true).size());
+    }
+
+    @Test
+    public void testSameAsIsDescendant() {
+        List<URL> urls = allUrls();
+        // every other URL is indexed
+        List<URL> indexed = new ArrayList<>();
+        for (int i = 0; i < urls.size(); i += 2) {
+            indexed.add(urls.get(i));
+            index.put(urls.get(i), urls.get(i));
+        }
+        assertEquals(indexed.size(), index.size());
+
+        for (URL url : urls) {
+            Set<URL> ancestors = new HashSet<>();
+            Set<URL> descendants = new HashSet<>();
+            for (URL candidate : indexed) {
+                if (url.isDescendant(candidate)) {
+                    ancestors.add(candidate);
+                }
+                if (candidate.isDescendant(url)) {
+                    descendants.add(candidate);
+                }
+            }
+            assertEquals(url.toString(), ancestors, new HashSet<>(index.getAncestors(url, false)));
+            assertEquals(url.toString(), descendants, new HashSet<>(index.getDescendants(url, false)));
+            for (URL candidate : indexed) {
+                if (isSameResource(url, candidate)) {
+                    ancestors.add(candidate);
+                    descendants.add(candidate);
+                }
+            }
+            assertEquals(ancestors, new HashSet<>(index.getAncestors(url, true)));
+            assertEquals(descendants, new HashSet<>(index.getDescendants(url, true)));
+        }
+
+        for (URL url : indexed) {
+            assertEquals(url, index.remove(url));
+        }
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void testMissingAdapter() {
+        URL adapter = new URL("/54:60:09:95:86:01");
+        URL device = new URL("//11:22:33:44:55:66");
+        URL service = new URL("/54:60:09:95:86:01/11:22:33:44:55:66/180f");
+        index.put(adapter, adapter);
+        index.put(device, device);
+        index.put(service, service);
+        // URLs with an adapter are descendants of URLs without one, see URL.isDescendant
+        assertEquals(new HashSet<>(Arrays.asList(adapter, service)),
+                new HashSet<>(index.getDescendants(device, false)));
+        assertEquals(new HashSet<>(Arrays.asList(device, service)),
+                new HashSet<>(index.getDescendants(adapter, false)));
+        assertEquals(Arrays.asList(adapter), index.getAncestors(device, false));
+        assertEquals(new HashSet<>(Arrays.asList(adapter, device)), new HashSet<>(index.getAncestors(service, false)));
+    }
+
+    @Test
+    public void testAncestorsOrder() {
+        URL field = new URL("/54:60:09:95:86:01/11:22:33:44:55:66/180f/2a19/Level");
+        for (URL url = field; url != null; url = url.getParent()) {
+            index.put(url, url);
+        }
+        index.put(URL.ROOT, URL.ROOT);
+        assertEquals(Arrays.asList(URL.ROOT, field.getAdapterURL(), field.getDeviceURL(), field.getServiceURL(),
+                field.getCharacteristicURL()), index.getAncestors(field, false));
+    }
+
+    private static boolean isSameResource(URL url, URL candidate) {
+        return (url.getProtocol() == null || candidate.getProtocol() == null
+                || url.getProtocol().equals(candidate.getProtocol()))
+                && url.copyWithProtocol(null).equals(candidate.copyWithProtocol(null));
+    }
+
+    private static List<URL> allUrls() {
+        List<URL> urls = new ArrayList<>();
+        urls.add(URL.ROOT);
+        for (String protocol : PROTOCOLS) {
+            if (protocol != null) {
+                urls.add(new URL(protocol + "://"));
+            }
+            for (String device : ADDRESSES) {
+                // adapter-less URLs
+                addDevice(urls, new URL(protocol, null, device));
+            }
+            for (String adapter : ADDRESSES) {
+                URL adapterUrl = new URL(protocol, adapter, null);
+                urls.add(adapterUrl);
+                for (String device : ADDRESSES) {
+                    addDevice(urls, adapterUrl.copyWithDevice(device));
+                }
+            }
+        }
+        return urls;
+    }
+
+    private static void addDevice(List<URL> urls, URL deviceUrl) {
+        urls.add(deviceUrl);
+        for (String service : UUIDS) {
+            urls.add(deviceUrl.copyWithService(service));
+            for (String characteristic : UUIDS) {
+                urls.add(deviceUrl.copyWith(service, characteristic));
+                for (String field : FIELDS) {
+                    urls.add(deviceUrl.copyWith(service, characteristic, field));
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,106 @@
+package org.sputnikdev.bluetooth;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class URLInternerTest {
+
+    private static final String FIELD = "tinyb:/B8:27:EB:60:0C:43/54:60:09:95:86:01/0000180f-0000-1000-8000-00805f9b34fb/"
+            + "00002a19-0000-1000-8000-00805f9b34fb/Level";
+
+    private final URLInterner interner = new URLInterner();
+
+    @Test
+    public void testIntern() {
+        URL url = interner.intern(FIELD);
+        assertSame(url, interner.intern(new URL(FIELD)));
+        assertSame(url, interner.intern(FIELD.toLowerCase()));
+        assertNull(interner.intern((URL) null));
+        assertEquals(1, interner.size());
+        interner.clear();
+        assertEquals(0, interner.size());
+    }
+
+    @Test
+    public void testParentAndAncestors() {
+        URL field = interner.intern(FIELD);
+        URL characteristic = interner.getParent(field);
+        assertEquals(field.getCharacteristicURL(), characteristic);
+        assertSame(characteristic, interner.getParent(field));
+        assertSame(characteristic, interner.intern(field.getCharacteristicURL()));
+        assertSame(characteristic, interner.getCharacteristicURL(field));
+
+        URL service = interner.getServiceURL(field);
+        assertEquals(field.getServiceURL(), service);
+        assertSame(service, interner.getParent(characteristic));
+
+        URL device = interner.getDeviceURL(field);
+        assertEquals(field.getDeviceURL(), device);
+        assertSame(device, interner.getParent(service));
+        assertSame(device, interner.getDeviceURL(device));
+
+        URL adapter = interner.getAdapterURL(field);
+        assertEquals(field.getAdapterURL(), adapter);
+        assertSame(adapter, interner.getParent(device));
+
+        URL protocol = interner.getParent(adapter);
+        assertEquals(field.getProtocolURL(), protocol);
+        assertNull(interner.getParent(protocol));
+
+        // requested level is below the URL
+        assertEquals(adapter.getDeviceURL(), interner.getDeviceURL(adapter));
+    }
+
+    @Test
+    public void testEviction() {
+        URLInterner small = new URLInterner(16);
+        URL url = small.intern(FIELD);
+        for (int i = 0; i < 1000; i++) {
+            small.intern(new URL(String.format("/B8:27:EB:60:0C:43/54:60:09:95:%02X:%02X", i >> 8, i & 0xFF)));
+        }
+        assertTrue(small.size() <= 16);
+        URL equal = new URL(FIELD);
+        URL interned = small.intern(equal);
+        assertEquals(url, interned);
+        assertSame(equal, interned);
+    }
+
+    @Test
+    public void testConcurrentIntern() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<URL[]>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit((Callable<URL[]>) () -> {
+                    URL[] urls = new URL[256];
+                    for (int i = 0; i < urls.length; i++) {
+                        urls[i] = interner.intern(new URL(FIELD).copyWithDevice(
+                                String.format("54:60:09:95:86:%02X", i)));
+                    }
+                    return urls;
+                }));
+            }
+            URL[] expected = futures.get(0).get();
+            for (Future<URL[]> future : futures) {
+                URL[] urls = future.get();
+                for (int i = 0; i < urls.length; i++) {
+                    assertSame(expected[i], urls[i]);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
@@ -0,0 +1,196 @@
+package org.sputnikdev.bluetooth;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Differential tests of the {@link URLParser} against the regular expression that used to be used by {@link URL}.
+ */
+public class URLParserTest {
+
+    private static final Pattern URL_PATTERN =
+            Pattern.compile("^((?<protocol>\\w*):)?/(?<adapter>(\\w\\w:){5}\\w\\w)?"
+                    + "(/(?<device>(\\w\\w:){5}\\w\\w)?(\\[name=(?<devicename>[\\w\\s'-]+)\\])?)?"
+                    + "(/(?<service>[0-9A-Fa-f]{4,8}(-[0-9A-Fa-f]{4}-[0-9A-Fa-f]{4}-[0-9A-Fa-f]{4}-[0-9A-Fa-f]{12})?))?"
+                    + "(/(?<charact>[0-9A-Fa-f]{4,8}(-[0-9A-Fa-f]{4}-[0-9A-Fa-f]{4}-[0-9A-Fa-f]{4}-[0-9A-Fa-f]{12})?))?"
+                    + "(/(?<field>\\w+))?$");
+
+    private static final String[] SAMPLES = {
+        "", "/", "//", "///", "////", "/////", "//////", ":/", "tinyb:/", "tinyb://", "tInYb:/", "tinyb:", "tinyb",
+        "tinyb:x/", "ti-nyb:/", "_:/", "tinyb:/54:60:09:95:86:01",
+        "tinyb:/54:60:09:95:86:01/11:22:33:44:55:66[name=Vlad's - phone]/0000180f-0000-1000-8000-00805f9b34fb"
+                + "/00002a19-0000-1000-8000-00805f9b34fb/Level",
+        "/54:60:09:95:86:01/11:22:33:44:55:66/180f/2a19/Level",
+        "/54:60:09:95:86:01/11:22:33:44:55:66/180F/2A19/leVel",
+        "/54:60:09:95:86:01/11:22:33:44:55:66/0000180f/00002a19",
+        "/54:60:09:95:86:01/11:22:33:44:55:66/180f-0000-1000-8000-00805f9b34fb",
+        "/54:60:09:95:86:01/ab:cd:ef:gh:ij:kl/180f", "/xx:xx:xx:xx:xx:xx/XX:XX:XX:XX:XX:XX",
+        "/Level", "/180f", "/180f/2a19", "/180f/2a19/Level", "//180f/2a19/Level", "//180f/Level", "//Level",
+        "//180f/2a19/Level/Extra", "/00002a19-0000-1000-8000-00805f9b34fb", "/180f/2a1/Level",
+        "/180f/00002a19-0000-10/Level", "/180f/00002a190/Level", "/180/2a19/Level", "/0000180f-3345/2a19/Level",
+        "/0000180f0/2a19/Level", "/11:22:33:44:5", "/11:22:33:44:55:66:77", "/54:60:09:95:86:/11:22:33:44:55:66",
+        "/54:60:09:95:86:01:02/11:22:33:44:55:66", "//[name=Test]", "//11:22:33:44:55:66[name=Test]",
+        "//[name=]", "//[name=a", "//[name=a]]", "//[name=a b\tc'-d]", "//[name=a/b]", "//[nam=a]",
+        "//11:22:33:44:55:66[name=Test]x", "//[name=Test]/180f/2a19/Level", "/54:60:09:95:86:01/",
+        "/54:60:09:95:86:01//", "/54:60:09:95:86:01///180f", "/54:60:09:95:86:01/11:22:33:44:55:66/",
+        "/54:60:09:95:86:01/11:22:33:44:55:66/180f/", "/54:60:09:95:86:01/11:22:33:44:55:66/180f/2a19/",
+        "/54:60:09:95:86:01/11:22:33:44:55:66/180f/2a19/Level/", "/\n", "tinyb://\n", "/\r\n", "/\r", "/\n\n",
+        "/\r\n\n", "/54:60:09:95:86:01\n", "/54:60:09:95:86:01\u0085", "/54:60:09:95:86:01\u2028",
+        "/54:60:09:95:86:01\u2029", "/54:60:09:95:86:01 ", "//[name=Test\n]", "//[name=Test]\n",
+        "/54:60:09:95:86:01/11:22:33:44:55:66/Level", "/54:60:09:95:86:01/11:22:33:44:55:66/abcd",
+        "/54:60:09:95:86:01/11:22:33:44:55:66/abcd/Level", "/54:60:09:95:86:01/11:22:33:44:55:66/abcd/abcd/abcd",
+        "/54:60:09:95:86:01/abcd/abcd/abcd", "/54:60:09:95:86:01/abcd/abcd/abcd/abcd", "/a/b", "/é",
+        "/54:60:09:95:86:01/11:22:33:44:55:66/١٢٣٤",
+    };
+
+    private static final String[] FRAGMENTS = {
+        "", "tinyb", "DBus", ":", "/", "54:60:09:95:86:01", "aB:cD:eF:00:11:22", "XX:XX:XX:XX:XX:XX", "11:22:33",
+        "[name=", "]", "Test", "Vlad's - phone", "[name=Test]", "180f", "2A19", "0000180f", "00002a19", "0000180f0",
+        "-0000-1000-8000-00805f9b34fb", "-0000-1000", "Level", "_", "-", " ", "\n", "\r", "\u2028", "g", "F",
+    };
+
+    @Test
+    public void testSamples() {
+        for (String sample : SAMPLES) {
+            assertSameAsRegex(sample);
+        }
+    }
+
+    @Test
+    public void testRandomCompositions() {
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            StringBuilder url = new StringBuilder();
+            if (random.nextInt(3) == 0) {
+                url.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+                url.append(':');
+            }
+            int length = random.nextInt(12);
+            for (int k = 0; k < length; k++) {
+                url.append(random.nextInt(3) == 0 ? "/" : FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            }
+            assertSameAsRegex(url.toString());
+        }
+    }
+
+    @Test
+    public void testRandomValidURLs() {
+        Random random = new Random(7);
+        String[] addresses = {"", "54:60:09:95:86:01", "aa:bb:cc:dd:ee:ff", "Zz:01:__:9a:Q0:xX"};
+        String[] names = {"", "[name=Test]", "[name=Vlad's - phone]"};
+        String[] uuids = {"180f", "2A19", "0000180F", "00002a19-0000-1000-8000-00805F9B34FB", "1234567",
+            "abcde-0000-1000-8000-00805f9b34fb"};
+        String[] fields = {"Level", "level_2", "0", "ABCD"};
+        for (int i = 0; i < 50_000; i++) {
+            List<String> parts = new ArrayList<>();
+            parts.add(random.nextBoolean() ? "" : "tinyb:");
+            parts.add("/" + addresses[random.nextInt(addresses.length)]);
+            if (random.nextBoolean()) {
+                parts.add("/" + addresses[random.nextInt(addresses.length)] + names[random.nextInt(names.length)]);
+            }
+            if (random.nextBoolean()) {
+                parts.add("/" + uuids[random.nextInt(uuids.length)]);
+            }
+            if (random.nextBoolean()) {
+                parts.add("/" + uuids[random.nextInt(uuids.length)]);
+            }
+            if (random.nextBoolean()) {
+                parts.add("/" + fields[random.nextInt(fields.length)]);
+            }
+            if (random.nextInt(10) == 0) {
+                Collections.shuffle(parts.subList(2, parts.size()), random);
+            }
+            assertSameAsRegex(String.join("", parts));
+        }
+    }
+
+    @Test
+    public void testURLErrorsAreTheSame() {
+        for (String sample : SAMPLES) {
+            String expected;
+            try {
+                expected = parseWithRegex(sample).toString();
+            } catch (IllegalArgumentException ex) {
+                expected = ex.getMessage();
+            }
+            String actual;
+            try {
+                actual = new URL(sample).toString();
+            } catch (IllegalArgumentException ex) {
+                actual = ex.getMessage();
+            }
+            assertEquals(sample, expected, actual);
+        }
+    }
+
+    @Test
+    public void testCaseNormalization() {
+        URLParser parser = new URLParser("TinyB:/aa:bb:cc:dd:ee:ff/11:22:33:44:55:6f[name=Test]/180F/2a19/LeVeL");
+        assertEquals("tinyb", parser.protocol);
+        assertEquals("AA:BB:CC:DD:EE:FF", parser.adapterAddress);
+        assertEquals("11:22:33:44:55:6F", parser.deviceAddress);
+        assertEquals("Test", parser.deviceName);
+        assertEquals("180f", parser.serviceUUID);
+        assertEquals("2a19", parser.characteristicUUID);
+        assertEquals("LeVeL", parser.fieldName);
+
+        parser = new URLParser("/54:60:09:95:86:01");
+        assertNull(parser.protocol);
+        assertEquals("54:60:09:95:86:01", parser.adapterAddress);
+        assertNull(parser.deviceAddress);
+    }
+
+    private static void assertSameAsRegex(String url) {
+        Matcher matcher = URL_PATTERN.matcher(url);
+        URLParser parser;
+        try {
+            parser = new URLParser(url);
+        } catch (IllegalArgumentException ex) {
+            if (matcher.find()) {
+                fail("Parser has rejected a valid URL: " + url);
+            }
+            assertEquals("Invalid URL: " + url, ex.getMessage());
+            return;
+        }
+        if (!matcher.find()) {
+            fail("Parser has accepted an invalid URL: " + url);
+        }
+        assertEquals(url, toLowerCase(matcher.group("protocol")), parser.protocol);
+        assertEquals(url, toUpperCase(matcher.group("adapter")), parser.adapterAddress);
+        assertEquals(url, toUpperCase(matcher.group("device")), parser.deviceAddress);
+        assertEquals(url, matcher.group("devicename"), parser.deviceName);
+        assertEquals(url, toLowerCase(matcher.group("service")), parser.serviceUUID);
+        assertEquals(url, toLowerCase(matcher.group("charact")), parser.characteristicUUID);
+        assertEquals(url, matcher.group("field"), parser.fieldName);
+    }
+
+    private static URL parseWithRegex(String url) {
+        Matcher matcher = URL_PATTERN.matcher(url);
+        if (!matcher.find()) {
+            throw new IllegalArgumentException("Invalid URL: " + url);
+        }
+        String deviceName = matcher.group("devicename");
+        return new URL(matcher.group("protocol"), matcher.group("adapter"), matcher.group("device"),
+                deviceName != null ? Collections.singletonMap("name", deviceName) : null,
+                matcher.group("service"), matcher.group("charact"), matcher.group("field"));
+    }
+
+    private static String toUpperCase(String str) {
+        return str != null ? str.toUpperCase() : null;
+    }
+
+    private static String toLowerCase(String str) {
+        return str != null ? str.toLowerCase() : null;
+    }
+
+}
@@ -0,0 +1,133 @@
+package org.sputnikdev.bluetooth;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class URLSortKeyTest {
+
+    private static final String[] PROTOCOLS = {null, "dbus", "tinyb"};
+    private static final String[] ADDRESSES = {"00:00:00:00:00:00", "54:60:09:95:86:01", "54:60:09:95:86:0A",
+        "FF:FF:FF:FF:FF:FF"};
+    private static final String[] UUIDS = {"0000180f-0000-1000-8000-00805f9b34fb", "0000180a-0000-1000-8000-00805f9b34fb",
+        "f000aa00-0451-4000-b000-000000000000", "ffffffff-ffff-ffff-ffff-ffffffffffff"};
+    private static final String[] FIELDS = {"Level", "level2", "Power"};
+
+    private final Random random = new Random(1);
+
+    @Test
+    public void testSameOrderAsURL() {
+        List<URL> urls = randomURLs(2000);
+        for (int i = 0; i < urls.size(); i++) {
+            URL url1 = urls.get(i);
+            URL url2 = urls.get(random.nextInt(urls.size()));
+            assertEquals(url1 + " vs " + url2, Integer.signum(url1.compareTo(url2)),
+                    Integer.signum(url1.getSortKey().compareTo(url2.getSortKey())));
+            assertEquals(url1.equals(url2), url1.getSortKey().equals(url2.getSortKey()));
+            if (url1.equals(url2)) {
+                assertEquals(url1.getSortKey().hashCode(), url2.getSortKey().hashCode());
+            }
+        }
+    }
+
+    @Test
+    public void testCanonical() {
+        URL shortForm = new URL("/54:60:09:95:86:01/11:22:33:44:55:66/180f/2a19/Level");
+        URL fullForm = new URL("/54:60:09:95:86:01/11:22:33:44:55:66/0000180f-0000-1000-8000-00805f9b34fb/"
+                + "00002a19-0000-1000-8000-00805f9b34fb/LEVEL");
+        assertEquals(fullForm.getSortKey(), shortForm.getSortKey());
+        assertEquals(fullForm.getSortKey().hashCode(), shortForm.getSortKey().hashCode());
+        assertEquals(0, fullForm.getSortKey().compareTo(shortForm.getSortKey()));
+    }
+
+    @Test
+    public void testAttributesAndNonStandardComponents() {
+        URL named = new URL("//[name=Sensor]");
+        URL address = new URL("/54:60:09:95:86:01/11:22:33:44:55:66");
+        URL both = address.copyWithDevice("11:22:33:44:55:66", "name", "Sensor");
+        URL nonStandard = new URL(null, "hci0", "11:22:33:44:55:66", null, "custom", null, null);
+        List<URL> urls = new ArrayList<>();
+        Collections.addAll(urls, named, address, both, nonStandard, nonStandard.copyWithService("180f"));
+        for (URL url1 : urls) {
+            for (URL url2 : urls) {
+                int expected = Integer.signum(url1.getSortKey().compareTo(url2.getSortKey()));
+                assertEquals(-expected, Integer.signum(url2.getSortKey().compareTo(url1.getSortKey())));
+                assertEquals(url1.equals(url2), expected == 0);
+            }
+        }
+    }
+
+    @Test
+    public void testRangeQueries() {
+        List<URL> urls = randomURLs(5000);
+        ConcurrentSkipListMap<URLSortKey, URL> map = new ConcurrentSkipListMap<>();
+        TreeMap<URL, URL> tree = new TreeMap<>();
+        for (URL url : urls) {
+            map.put(url.getSortKey(), url);
+            tree.put(url, url);
+        }
+        for (int i = 0; i < 500; i++) {
+            URL ancestor = urls.get(random.nextInt(urls.size()));
+            if (random.nextBoolean()) {
+                ancestor = ancestor.getParent() != null ? ancestor.getParent() : ancestor;
+            }
+            Set<URL> expected = new HashSet<>();
+            for (URL url : tree.keySet()) {
+                boolean sameProtocol = ancestor.getProtocol() == null
+                        ? url.getProtocol() == null : ancestor.getProtocol().equals(url.getProtocol());
+                if (sameProtocol && (url.equals(ancestor) || url.isDescendant(ancestor))) {
+                    expected.add(url);
+                }
+            }
+            Set<URL> actual = new HashSet<>(map.subMap(URLSortKey.of(ancestor), URLSortKey.upperBound(ancestor))
+                    .values());
+            assertEquals(ancestor.toString(), expected, actual);
+        }
+        assertTrue(URLSortKey.of(URL.ROOT).compareTo(URLSortKey.upperBound(URL.ROOT)) < 0);
+    }
+
+    @Test
+    public void testRangeQueriesWithMissingComponents() {
+        URL deviceOnly = new URL("//11:22:33:44:55:66");
+        URL service = new URL("/54:60:09:95:86:01/11:22:33:44:55:66/180f");
+        URL deviceOnlyService = new URL("//11:22:33:44:55:66/180f");
+        TreeMap<URLSortKey, URL> map = new TreeMap<>();
+        map.put(service.getSortKey(), service);
+        map.put(deviceOnlyService.getSortKey(), deviceOnlyService);
+
+        // URL.isDescendant treats a missing adapter as any adapter, range queries do not
+        assertTrue(service.isDescendant(deviceOnly));
+        assertEquals(Collections.singletonList(deviceOnlyService),
+                new ArrayList<>(map.subMap(URLSortKey.of(deviceOnly), URLSortKey.upperBound(deviceOnly)).values()));
+
+        URL adapterOnly = new URL("/54:60:09:95:86:01");
+        assertEquals(Collections.singletonList(service),
+                new ArrayList<>(map.subMap(URLSortKey.of(adapterOnly), URLSortKey.upperBound(adapterOnly)).values()));
+    }
+
+    private List<URL> randomURLs(int count) {
+        List<URL> urls = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int depth = random.nextInt(6);
+            String protocol = PROTOCOLS[random.nextInt(PROTOCOLS.length)];
+            urls.add(new URL(protocol, depth > 0 ? pick(ADDRESSES) : null, depth > 1 ? pick(ADDRESSES) : null,
+                    depth > 2 ? pick(UUIDS) : null, depth > 3 ? pick(UUIDS) : null, depth > 4 ? pick(FIELDS) : null));
+        }
+        return urls;
+    }
+
+    private String pick(String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+}
@@ -27,8 +27,10 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
 import java.net.MalformedURLException;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Scanner;
 import java.util.regex.MatchResult;
@@ -38,6 +40,7 @@ import java.util.regex.Pattern;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class URLTest {
@@ -182,6 +185,42 @@ public class URLTest {
         assertEquals("Level", url.getFieldName());
     }
 
+    @Test
+    public void testCanonicalUUIDs() {
+        URL shortForm = new URL("/54:60:09:95:86:01/11:22:33:44:55:66/180f/2A19/Level");
+        URL fullForm = new URL("/54:60:09:95:86:01/11:22:33:44:55:66/0000180f-0000-1000-8000-00805f9b34fb/"
+                + "00002a19-0000-1000-8000-00805f9b34fb/Level");
+        assertFalse(shortForm.equals(fullForm));
+        assertEquals(fullForm, shortForm.toCanonical());
+        assertEquals(fullForm.hashCode(), shortForm.toCanonical().hashCode());
+        assertEquals(fullForm, fullForm.toCanonical());
+        URL canonical = shortForm.toCanonical();
+        assertSame(canonical, canonical.toCanonical());
+        assertSame(URL.ROOT, URL.ROOT.toCanonical());
+        assertTrue(canonical.isCanonical());
+        assertFalse(shortForm.isCanonical());
+
+        // canonical URLs compare parsed UUIDs, consistently with non-canonical URLs of the same full form UUIDs
+        URL other = shortForm.copyWith("180a", "2a19", "Level").toCanonical();
+        assertEquals(canonical, fullForm.copyWithProtocol(null).toCanonical());
+        assertEquals(0, canonical.compareTo(fullForm.toCanonical()));
+        assertEquals(Integer.signum(fullForm.compareTo(other)), Integer.signum(canonical.compareTo(other)));
+        assertEquals(Integer.signum(fullForm.compareTo(other)),
+                Integer.signum(canonical.compareTo(new URL(other.toString()))));
+        assertEquals(canonical.hashCode(), fullForm.toCanonical().hashCode());
+        assertSame(canonical.getServiceUUIDValue(), canonical.getServiceUUIDValue());
+        assertSame(shortForm.getServiceUUIDValue(), shortForm.getServiceUUIDValue());
+
+        // non-standard UUIDs are left as they are
+        URL custom = new URL("54:60:09:95:86:01", "11:22:33:44:55:66", "custom-service", null);
+        assertEquals("custom-service", custom.toCanonical().getServiceUUID());
+        assertEquals(custom, custom.toCanonical());
+        assertEquals(custom.toCanonical(), custom.toCanonical());
+        assertEquals(shortForm.getServiceUUIDValue(), fullForm.getServiceUUIDValue());
+        assertEquals(BluetoothUUID.valueOf(0x2a19), shortForm.getCharacteristicUUIDValue());
+        assertNull(URL.ROOT.getServiceUUIDValue());
+    }
+
     @Test
     public void testIsMethods() {
         URL url = new URL();
@@ -396,6 +435,7 @@ public class URLTest {
 
         url = new URL("//11:22:33:44:55:66[name=Test]");
         assertEquals("//11:22:33:44:55:66[name=Test]", url.toString());
+        assertSame(url.toString(), url.toString());
     }
 
     @Test
@@ -494,6 +534,11 @@ public class URLTest {
         assertTrue(url.equals(url));
         assertTrue(url.hashCode() == url.hashCode());
 
+        // field names are case insensitive
+        assertEquals(url.copyWithField("LEVEL"), url.copyWithField("level"));
+        assertEquals(url.copyWithField("LEVEL").hashCode(), url.copyWithField("level").hashCode());
+        assertEquals("LEVEL", url.copyWithField("LEVEL").getFieldName());
+
     }
 
     @Test
@@ -549,6 +594,53 @@ public class URLTest {
         assertEquals(-1, url2.compareTo(url1));
     }
 
+    @Test
+    public void testCompareToConsistentWithEquals() {
+        URL url = new URL("tinyb:/54:60:09:95:86:01/11:22:33:44:55:66/180f/2a19/Level");
+        URL[] urls = {url, url.copyWithProtocol(null), url.copyWithProtocol("dbus"), url.copyWithField("LEVEL"),
+            url.copyWithDevice("11:22:33:44:55:66", "name", "Sensor"),
+            url.copyWithDevice("11:22:33:44:55:66", "name", "Sensor 2"),
+            url.copyWithDevice("11:22:33:44:55:66", "alias", "Sensor"),
+            url.copyWithDevice(null, "name", "Sensor")};
+        for (URL url1 : urls) {
+            for (URL url2 : urls) {
+                int result = url1.compareTo(url2);
+                assertEquals(url1 + " vs " + url2, url1.equals(url2), result == 0);
+                assertEquals(-Integer.signum(result), Integer.signum(url2.compareTo(url1)));
+            }
+        }
+        assertEquals(0, url.compareTo(url.copyWithField("LEVEL")));
+    }
+
+    @Test
+    public void testCompareToAttributes() {
+        Map<String, String> attributes = new LinkedHashMap<>();
+        attributes.put("name", "Sensor");
+        attributes.put("alias", "Kitchen");
+        Map<String, String> reversed = new LinkedHashMap<>();
+        reversed.put("alias", "Kitchen");
+        reversed.put("name", "Sensor");
+        URL url1 = new URL(null, "54:60:09:95:86:01", attributes, null, null, null);
+        URL url2 = new URL(null, "54:60:09:95:86:01", reversed, null, null, null);
+        assertEquals(0, url1.compareTo(url2));
+        assertEquals(0, url2.compareTo(url1));
+
+        // attributes are compared in the order of their names: "alias" first, then "name"
+        reversed.put("name", "Another sensor");
+        url2 = new URL(null, "54:60:09:95:86:01", reversed, null, null, null);
+        assertTrue(url1.compareTo(url2) > 0);
+        assertTrue(url2.compareTo(url1) < 0);
+        reversed.put("alias", "Bedroom");
+        url2 = new URL(null, "54:60:09:95:86:01", reversed, null, null, null);
+        assertTrue(url1.compareTo(url2) > 0);
+
+        // a URL with fewer attributes goes first
+        URL single = new URL(null, "54:60:09:95:86:01", Collections.singletonMap("alias", "Kitchen"), null, null, null);
+        assertTrue(single.compareTo(url1) < 0);
+        assertTrue(url1.compareTo(single) > 0);
+        assertTrue(new URL("/54:60:09:95:86:01").compareTo(single) < 0);
+    }
+
     @Test
     public void testCompareToNulls() {
         URL url1 = URL.ROOT;